@@ -0,0 +1,78 @@
+package com.github.tarcv.ztest.simulation;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written equivalent of converted ACS scripts, so benchmarks don't depend on the converter
+ */
+class BenchmarkScripts extends ScriptContext<BenchmarkScripts> {
+    static final int MAX_CHILDREN = 16;
+    private static final int IDLE_DELAY = 35 * 60 * 60;
+    private static final String[] CHILD_NAMES = new String[MAX_CHILDREN];
+
+    static {
+        for (int i = 0; i < MAX_CHILDREN; i++) {
+            CHILD_NAMES[i] = "Child" + i;
+        }
+    }
+
+    private static final ScriptTable<BenchmarkScripts> SCRIPTS = new ScriptTable<>(scripts());
+
+    private int work = 0;
+
+    BenchmarkScripts(Simulation<BenchmarkScripts> simulation, @Nullable MapContext<BenchmarkScripts> mapContext) {
+        super(simulation, mapContext, BenchmarkScripts::new, SCRIPTS);
+    }
+
+    static BenchmarkScripts install(Simulation<BenchmarkScripts> simulation) {
+        BenchmarkScripts scripts = new BenchmarkScripts(simulation, null);
+        simulation.registerScriptEventsListener(scripts);
+        return scripts;
+    }
+
+    private static List<Script<BenchmarkScripts>> scripts() {
+        List<Script<BenchmarkScripts>> scripts = new ArrayList<>();
+        scripts.add(new Script<>("Idle", 0, (t, a) -> t.idle()));
+        scripts.add(new Script<>("Busy", 0, (t, a) -> t.busy()));
+        scripts.add(new Script<>("Parent", 1, (t, a) -> t.parent((int) a[0])));
+        for (String childName : CHILD_NAMES) {
+            scripts.add(new Script<>(childName, 0, (t, a) -> t.child()));
+        }
+        return scripts;
+    }
+
+    @Override
+    protected NamedRunnable getScriptRunnable(Script<BenchmarkScripts> script, Object[] args) {
+        return createScriptRunnable(this, script, args);
+    }
+
+    void idle() throws SuspendExecution {
+        while (true) {
+            delay(IDLE_DELAY);
+        }
+    }
+
+    void busy() throws SuspendExecution {
+        while (true) {
+            work = work * 31 + random(0, 100);
+            delay(1);
+        }
+    }
+
+    void parent(int children) throws SuspendExecution {
+        while (true) {
+            for (int i = 0; i < children; i++) {
+                ACS_NamedExecute(CHILD_NAMES[i], 0);
+            }
+            delay(1);
+        }
+    }
+
+    void child() throws SuspendExecution {
+        work++;
+    }
+}
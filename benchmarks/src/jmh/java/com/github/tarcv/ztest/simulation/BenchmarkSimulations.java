@@ -0,0 +1,28 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+class BenchmarkSimulations {
+    static final Predicate<List<String>> ALWAYS_IDLE = runnables -> true;
+
+    private BenchmarkSimulations() {
+    }
+
+    static Simulation<BenchmarkScripts> create(SimulationBackend backend) {
+        Simulation<BenchmarkScripts> simulation = new Simulation<>(1, backend);
+        simulation.setTraceSink(TraceSink.off());
+        return simulation;
+    }
+
+    /**
+     * Adds a player and executes the first ticks, so scripts can be puked by the player
+     */
+    static Player startGame(Simulation<BenchmarkScripts> simulation) {
+        Player player = simulation.addPlayer("benchmark", 100, 0, false);
+        simulation.runAtLeastTicks(1, ALWAYS_IDLE);
+        player.joinGame();
+        simulation.runAtLeastTicks(1, ALWAYS_IDLE);
+        return player;
+    }
+}
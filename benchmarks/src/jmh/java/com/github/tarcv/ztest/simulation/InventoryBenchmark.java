@@ -0,0 +1,73 @@
+package com.github.tarcv.ztest.simulation;
+
+import com.github.tarcv.ztest.simulation.builtin.Health;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Giving, checking and taking items, both on the store directly and through a thing as scripts do
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InventoryBenchmark {
+    private static final int OPERATIONS = 1000;
+
+    private final InventoryStore store = new InventoryStore();
+
+    @State(Scope.Thread)
+    public static class Owner {
+        @Param({"QUASAR_FIBERS", "VIRTUAL_THREADS"})
+        public SimulationBackend backend;
+
+        private Simulation<BenchmarkScripts> simulation;
+        private Thing thing;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            simulation = BenchmarkSimulations.create(backend);
+            BenchmarkScripts.install(simulation);
+            Player player = BenchmarkSimulations.startGame(simulation);
+            simulation.withTickLockInternal(() -> thing = player.getPawn());
+        }
+
+        /**
+         * Gives that schedule runnables would make the list of scheduled runnables grow across invocations,
+         * so a tick is executed between invocations to start them
+         */
+        @Setup(Level.Invocation)
+        public void executeScheduled() {
+            simulation.runAtLeastTicks(1, BenchmarkSimulations.ALWAYS_IDLE);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            simulation.close();
+        }
+    }
+
+    @Benchmark
+    public void store(Blackhole blackhole) {
+        store.addAmount(Health.class, 5);
+        blackhole.consume(store.count("Health"));
+        store.remove("Health", 5);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void thing(Owner owner, Blackhole blackhole) {
+        Thing thing = owner.thing;
+        owner.simulation.withTickLockInternal(() -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                thing.giveInventory("Health", 5);
+                blackhole.consume(thing.checkInventory("Health"));
+                thing.takeInventory("Health", 5);
+            }
+        });
+    }
+}
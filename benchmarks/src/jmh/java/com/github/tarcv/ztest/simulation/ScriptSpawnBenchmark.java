@@ -0,0 +1,49 @@
+package com.github.tarcv.ztest.simulation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tarcv.ztest.simulation.BenchmarkSimulations.ALWAYS_IDLE;
+
+/**
+ * Cost of a tick in which a script starts other scripts through ACS_NamedExecute, which all finish on the same tick.
+ * Compare with {@code spawnsPerTick = 0} to get the cost of spawning alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScriptSpawnBenchmark {
+    @Param({"QUASAR_FIBERS", "VIRTUAL_THREADS"})
+    public SimulationBackend backend;
+
+    @Param({"0", "1", "16"})
+    public int spawnsPerTick;
+
+    private Simulation<BenchmarkScripts> simulation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (spawnsPerTick > BenchmarkScripts.MAX_CHILDREN) {
+            throw new IllegalArgumentException("spawnsPerTick is too big");
+        }
+        simulation = BenchmarkSimulations.create(backend);
+        BenchmarkScripts scripts = BenchmarkScripts.install(simulation);
+        Player player = BenchmarkSimulations.startGame(simulation);
+        scripts.pukeScript(player, "Parent", spawnsPerTick);
+        simulation.runAtLeastTicks(2, ALWAYS_IDLE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        simulation.close();
+    }
+
+    @Benchmark
+    public void tickWithSpawns() {
+        simulation.runAtLeastTicks(1, ALWAYS_IDLE);
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.tarcv.ztest.simulation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tarcv.ztest.simulation.BenchmarkSimulations.ALWAYS_IDLE;
+
+/**
+ * Ticks per second with scripts waiting for a far tick and scripts resumed on every tick
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TickBenchmark {
+    @Param({"QUASAR_FIBERS", "VIRTUAL_THREADS"})
+    public SimulationBackend backend;
+
+    @Param({"0", "10", "100"})
+    public int idleScripts;
+
+    @Param({"0", "10", "100"})
+    public int busyScripts;
+
+    private Simulation<BenchmarkScripts> simulation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        simulation = BenchmarkSimulations.create(backend);
+        BenchmarkScripts scripts = BenchmarkScripts.install(simulation);
+        Player player = BenchmarkSimulations.startGame(simulation);
+        for (int i = 0; i < idleScripts; i++) {
+            scripts.pukeScript(player, "Idle");
+        }
+        for (int i = 0; i < busyScripts; i++) {
+            scripts.pukeScript(player, "Busy");
+        }
+        simulation.runAtLeastTicks(2, ALWAYS_IDLE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        simulation.close();
+    }
+
+    @Benchmark
+    public void tick() {
+        simulation.runAtLeastTicks(1, ALWAYS_IDLE);
+    }
+}
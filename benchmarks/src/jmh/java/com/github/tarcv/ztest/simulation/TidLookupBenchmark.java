@@ -0,0 +1,55 @@
+package com.github.tarcv.ztest.simulation;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding things by TID with different number of things in the simulation
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TidLookupBenchmark {
+    private static final int LOOKUPS = 1000;
+
+    @Param({"QUASAR_FIBERS", "VIRTUAL_THREADS"})
+    public SimulationBackend backend;
+
+    @Param({"10", "1000", "100000"})
+    public int things;
+
+    private Simulation<BenchmarkScripts> simulation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        simulation = BenchmarkSimulations.create(backend);
+        BenchmarkScripts.install(simulation);
+        BenchmarkSimulations.startGame(simulation);
+        simulation.withTickLockInternal(() -> {
+            for (int i = 0; i < things; i++) {
+                new Thing(simulation).setTid(i + 1);
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        simulation.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void lookup(Blackhole blackhole) {
+        simulation.withTickLockInternal(() -> {
+            for (int i = 0; i < LOOKUPS; i++) {
+                int tid = 1 + (int) ((i * 7919L) % things);
+                blackhole.consume(simulation.getThingsByTid(tid, null));
+            }
+        });
+    }
+}
@@ -0,0 +1,115 @@
+package converter;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Conversion throughput on generated sources of increasing size
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConverterBenchmark {
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private Path workDir;
+    private Path acsFile;
+    private Path decorateFile;
+    private Path outputDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("ztest-converter-benchmark");
+        outputDir = Files.createDirectory(workDir.resolve("out"));
+        acsFile = workDir.resolve("synthetic.acs");
+        decorateFile = workDir.resolve("DECORATE.txt");
+        Files.write(acsFile, generateAcs(size).getBytes(StandardCharsets.UTF_8));
+        Files.write(decorateFile, generateDecorate(size).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void convertAcs() throws IOException {
+        AcsConverter.convertAcs(acsFile, outputDir);
+    }
+
+    @Benchmark
+    public String convertDecorate() throws IOException {
+        return DecorateConverter.convertDecorate(decorateFile, outputDir);
+    }
+
+    /**
+     * @param scripts number of scripts, each of them also has a map variable and a function
+     */
+    static String generateAcs(int scripts) {
+        StringBuilder source = new StringBuilder();
+        source.append("#library \"synthetic\"\n")
+                .append("#include \"zcommon.acs\"\n\n")
+                .append("#define MAX_VALUE 100\n\n")
+                .append("global int 1:globalCounter;\n\n");
+        for (int i = 0; i < scripts; i++) {
+            source.append("int value").append(i).append(" = ").append(i).append(";\n");
+        }
+        source.append('\n');
+        for (int i = 0; i < scripts; i++) {
+            source.append("function int next").append(i).append("(int a)\n")
+                    .append("{\n")
+                    .append("    return a + ").append(i).append(";\n")
+                    .append("}\n\n");
+            source.append("script \"Script").append(i).append("\" (int a, int b)\n")
+                    .append("{\n")
+                    .append("    while (value").append(i).append(" < MAX_VALUE) {\n")
+                    .append("        value").append(i).append(" = next").append(i)
+                    .append("(value").append(i).append(");\n")
+                    .append("        globalCounter++;\n")
+                    .append("        delay(1);\n")
+                    .append("    }\n")
+                    .append("    int sum = a + b;\n")
+                    .append("    print(s:\"sum \", d:sum);\n")
+                    .append("}\n\n");
+        }
+        return source.toString();
+    }
+
+    /**
+     * @param actors number of actors, each of them also has a damage type
+     */
+    static String generateDecorate(int actors) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < actors; i++) {
+            source.append("Actor SyntheticActor").append(i).append("\n")
+                    .append("{\n")
+                    .append("    Health ").append(100 + i).append('\n')
+                    .append("    +SHOOTABLE\n")
+                    .append("    States\n")
+                    .append("    {\n")
+                    .append("    Spawn:\n")
+                    .append("        TNT1 A 1\n")
+                    .append("        loop\n")
+                    .append("    }\n")
+                    .append("}\n\n");
+            source.append("DamageType SyntheticDamage").append(i).append("\n")
+                    .append("{\n")
+                    .append("    NoArmor\n")
+                    .append("}\n\n");
+        }
+        return source.toString();
+    }
+}
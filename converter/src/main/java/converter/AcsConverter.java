@@ -1,16 +1,21 @@
 package converter;
 
+import converter.AcsLexer.Token;
+
 import java.io.IOException;
-import java.io.Writer;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.regex.Pattern;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+import static converter.AcsLexer.TokenKind.IDENTIFIER;
 import static java.lang.System.lineSeparator;
-import static java.util.regex.Pattern.CASE_INSENSITIVE;
 
 public class AcsConverter {
 
@@ -26,7 +31,7 @@ public class AcsConverter {
             "        public ScriptContext<Scripts> create(Simulation<Scripts> simulation, MapContext<Scripts> context) {\n" +
             "            return new Scripts(simulation, context);\n" +
             "        }\n" +
-            "    }, scripts());\n" +
+            "    }, SCRIPTS);\n" +
             "}\n" +
             "\n" +
             "@Override\n" +
@@ -34,79 +39,40 @@ public class AcsConverter {
             "    return createScriptRunnable(this, script, args);\n" +
             "}".replace("\n", lineSeparator());
 
+    private static final Set<String> PRINT_FUNCTIONS = new HashSet<>(Arrays.asList(
+            "print", "printbold", "hudmessage", "hudmessagebold"));
+
     private AcsConverter() {}
 
     public static void convertAcs(Path file, Path outputDir) throws IOException {
-        StringBuffer data = new StringBuffer(new String(Files.readAllBytes(file)));
-        StringBuilder converted = new StringBuilder(data.length());
-
-        Pattern libraryMacro = Pattern.compile("^\\s*#library\\s+\".+?\"[^\\r\\n]*", CASE_INSENSITIVE | Pattern.MULTILINE);
-        Pattern ignoredInclude = Pattern.compile("^\\s*#include\\s+\"zcommon\\.acs\"[^\\r\\n]*", CASE_INSENSITIVE | Pattern.MULTILINE);
-        data = ConvertUtils.removeByPattern(data, libraryMacro);
-        data = ConvertUtils.removeByPattern(data, ignoredInclude);
+        AcsFile acsFile = AcsParser.parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
 
         StringBuilder global = new StringBuilder();
-        StringBuilder globalInit = new StringBuilder();
         StringBuilder globalConstants = new StringBuilder();
         StringBuilder world = new StringBuilder();
-        StringBuilder worldInit = new StringBuilder();
         StringBuilder map = new StringBuilder();
         StringBuilder mapVars = new StringBuilder();
         StringBuilder scripts = new StringBuilder();
         StringBuilder additionalScriptJava = new StringBuilder();
 
-        Pattern additionalMethod = Pattern.compile(
-                "^\\s*/\\*\\*TEST_ONLY_SCRIPTS\\s+([\\S\\s]+?)\\*\\*/$",
-                Pattern.MULTILINE);
-        Pattern script = Pattern.compile(
-                "^script\\s+(\"\\w+\"|\\w+)\\s*(?:\\((\\s*void\\s*|\\s*(?:\\/\\*\\*TEST_TYPE:\\w+\\*\\*\\/)?\\w+\\s+\\w+\\s*(?:,\\s*\\w+\\s+\\w+\\s*)*)\\))?((?:\\s+\\w+)*)\\s*\\{([^}]+)\\}",
-                CASE_INSENSITIVE | Pattern.MULTILINE);
-        Pattern function = Pattern.compile(
-                "^function\\s+(\\w+)\\s+(\\w+)\\s*(?:\\((\\s*void\\s*|\\s*\\w+\\s+\\w+\\s*(?:,\\s*\\w+\\s+\\w+\\s*)*)\\))\\s*\\{([^}]+)\\}",
-                CASE_INSENSITIVE | Pattern.MULTILINE);
-        Pattern globalVar = Pattern.compile(
-                "^(global|world)\\s+(bool|int|str)\\s+\\d+:([^\\s=;]+)\\s*;",
-                CASE_INSENSITIVE | Pattern.MULTILINE);
-        Pattern var = Pattern.compile(
-                "^(bool|int|str)\\s+([^\\s=;]+)(?:\\s*=\\s*([^=;]+))?\\s*",
-                CASE_INSENSITIVE | Pattern.MULTILINE);
-        Pattern constant = Pattern.compile(
-                "^\\s*#(?:lib)?define\\s+(\\w+)\\s+(.+)$",
-                CASE_INSENSITIVE | Pattern.MULTILINE);
-
-        ConvertUtils.DataPair dataPair = ConvertUtils.tryParseAndRemove(new ConvertUtils.DataPair(data), additionalMethod, additionalMethodGroups -> {
-            String body = additionalMethodGroups.group(1);
+        for (String java : acsFile.testOnlyJava) {
             if (additionalScriptJava.length() > 0) {
                 additionalScriptJava.append(lineSeparator());
             }
-            additionalScriptJava.append(body);
-        });
-
-        dataPair = ConvertUtils.tryParseAndRemove(dataPair, script, scriptGroups -> {
-            String name = scriptGroups.group(1);
-            if (name.startsWith("\"") && name.endsWith("\"")) {
-                name = name.substring(1, name.length() -1);
-            }
-
-            String arguments = convertArguments(scriptGroups.group(2));
-            String[] argumentArray = arguments.split(",");
-            if (argumentArray.length == 1 && argumentArray[0].isEmpty()) {
-                argumentArray = new String[0];
-            }
+            additionalScriptJava.append(java);
+        }
 
-            String types = scriptGroups.group(3).trim();
-            String body = scriptGroups.group(4);
+        for (AcsFile.Script script : acsFile.scripts) {
+            String name = script.name;
 
             StringBuilder argLambda = new StringBuilder("(t, a) -> t.")
                     .append(name).append("(");
             int argIndex = 0;
-            for (String argument : argumentArray) {
-                String[] argParts = argument.trim().split("\\s+");
-                String type = String.join("", Arrays.copyOf(argParts, argParts.length - 1));
+            for (AcsFile.Parameter parameter : script.parameters) {
                 if (argIndex > 0) {
                     argLambda.append(", ");
                 }
-                argLambda.append("(").append(type).append(") a[").append(argIndex).append("]");
+                argLambda.append("(").append(convertType(parameter.type)).append(") a[").append(argIndex).append("]");
 
                 ++argIndex;
             }
@@ -117,112 +83,73 @@ public class AcsConverter {
             }
             scripts.append("\t\tnew Script<>(\"")
                     .append(name).append("\", ")
-                    .append(argumentArray.length).append(", ")
+                    .append(script.parameters.size()).append(", ")
                     .append(argLambda);
-            if (types != null && !types.isEmpty()) {
-                String[] typesArr = types.trim().toUpperCase().split("\\s");
-                for (String type : typesArr) {
-                    scripts.append(", ").append(type);
-                }
+            for (String type : script.types) {
+                scripts.append(", ").append(type);
             }
             scripts.append(")");
 
             if (map.length() > 0) {
                 map.append(lineSeparator());
             }
-            map.append("void ").append(name).append("(").append(arguments).append(") throws SuspendExecution {");
-            map.append(convertScriptBody(body));
+            map.append("void ").append(name).append("(").append(convertArguments(script.parameters)).append(") throws SuspendExecution {");
+            map.append(convertScriptBody(script.body));
             map.append("}").append(lineSeparator());
-        });
-
-        dataPair = ConvertUtils.tryParseAndRemove(dataPair, function, functionGroups -> {
-            String returnType = convertType(functionGroups.group(1));
-            String name = functionGroups.group(2);
-
-            String arguments = convertArguments(functionGroups.group(3));
+        }
 
-            String body = functionGroups.group(4);
+        for (AcsFile.Function function : acsFile.functions) {
+            String returnType = convertType(function.returnType);
 
             if (map.length() > 0) {
                 map.append(lineSeparator());
             }
-            map.append(returnType).append(" ").append(name).append("(").append(arguments).append(")").append("{");
-            map.append(convertScriptBody(body));
+            map.append(returnType).append(" ").append(function.name).append("(").append(convertArguments(function.parameters)).append(")").append("{");
+            map.append(convertScriptBody(function.body));
             map.append("}").append(lineSeparator());
-        });
-
-        dataPair = ConvertUtils.tryReplace(dataPair, globalVar, globalVarGroups -> {
-            String scope = globalVarGroups.group(1).trim().toLowerCase();
-            StringBuilder scopeBuilder;
-            StringBuilder scopeInitBuilder;
-            if ("global".equals(scope)) {
-                scopeBuilder = global;
-                scopeInitBuilder = globalInit;
-            } else if ("world".equals(scope)) {
-                scopeBuilder = world;
-                scopeInitBuilder = worldInit;
-            } else {
-                return globalVarGroups.group();
-            }
+        }
+
+        // global and world variables are fields of map instances too, so every simulation starts with fresh ones
+        for (AcsFile.ScopedVariable variable : acsFile.scopedVariables) {
+            StringBuilder scopeBuilder = variable.isGlobal ? global : world;
 
-            String type = convertType(globalVarGroups.group(2));
-            String name = globalVarGroups.group(3);
-            boolean isArray = name.trim().endsWith("]");
+            String type = convertType(variable.type);
+            String name = variable.name;
+            boolean isArray = name.endsWith("]");
 
-            scopeBuilder.append("\tstatic ").append(type).append(" ").append(name);
+            scopeBuilder.append(type).append(" ").append(name);
             if (isArray) {
-                int nameEnds = name.lastIndexOf("[");
-                scopeInitBuilder.append(lineSeparator())
-                        .append("\t\t").append(name, 0, nameEnds).append(" = new ").append(type).append("[1000];");
-            } else if ("int".equals(type)) {
-                scopeInitBuilder.append(lineSeparator())
-                        .append("\t\t").append(name).append(" = 0;");
+                scopeBuilder.append(" = new ").append(type).append("[1000]");
             }
             scopeBuilder.append(";").append(lineSeparator());
+        }
 
-            return "";
-        });
-
-        dataPair = ConvertUtils.tryReplace(dataPair, var, varGroups -> {
-            String type = convertType(varGroups.group(1));
-            String name = varGroups.group(2).trim();
-            String value = varGroups.group(3);
-            boolean isArray = name.trim().endsWith("]");
-            boolean hasValue = value != null && !value.isEmpty();
-            String sizePart = "";
+        for (AcsFile.MapVariable variable : acsFile.mapVariables) {
+            String type = convertType(variable.type);
+            boolean isArray = !variable.sizes.isEmpty();
+            boolean hasValue = variable.value != null;
 
             mapVars.append(type);
-
-            if (isArray) {
-                int sizeStart = name.indexOf('[');
-                int sizeEnd = name.lastIndexOf(']');
-                sizePart = name.substring(sizeStart, sizeEnd + 1);
-                name = name.substring(0, sizeStart);
-
-                sizeStart = 0;
-                while (sizeStart >= 0) {
+            for (int i = 0; i < variable.sizes.length(); i++) {
+                if (variable.sizes.charAt(i) == '[') {
                     mapVars.append("[]");
-                    sizeStart = sizePart.indexOf('[', sizeStart + 1);
                 }
             }
 
-            mapVars.append(" ").append(name);
+            mapVars.append(" ").append(variable.name);
             if (isArray || hasValue) {
                 mapVars.append(" = ");
                 if (hasValue) {
-                    mapVars.append(value);
-                } else if (isArray) {
-                    mapVars.append("new ").append(type).append(sizePart);
+                    mapVars.append(variable.value);
+                } else {
+                    mapVars.append("new ").append(type).append(variable.sizes);
                 }
             }
             mapVars.append(";").append(lineSeparator());
+        }
 
-            return "";
-        });
-
-        dataPair = ConvertUtils.tryParseAndRemove(dataPair, constant, constantGroups -> {
-            String name = constantGroups.group(1).trim();
-            String value = constantGroups.group(2).trim();
+        for (AcsFile.Constant constant : acsFile.constants) {
+            String value = constant.value;
             String type;
             if (value.startsWith("\"") && value.endsWith("\"")) {
                 type = "String";
@@ -234,12 +161,12 @@ public class AcsConverter {
 
             globalConstants
                     .append(lineSeparator())
-                    .append("\tstatic final ").append(type).append(" ").append(name).append(" = ").append(value)
+                    .append("\tstatic final ").append(type).append(" ").append(constant.name).append(" = ").append(value)
                     .append(";");
-        });
+        }
 
         String safeClassName = file.getFileName().toString().replace(".", "_");
-        try (Writer writer = Files.newBufferedWriter(outputDir.resolve(safeClassName + ".java"))) {
+        try (StringWriter writer = new StringWriter()) {
 
             writer.append("package zdoom;").append(lineSeparator());
             writer.append("import co.paralleluniverse.fibers.SuspendExecution;").append(lineSeparator());
@@ -255,169 +182,216 @@ public class AcsConverter {
             writer.append("import static com.github.tarcv.ztest.simulation.ScriptContext.ScriptType.*;").append(lineSeparator());
             writer.append("import static com.github.tarcv.ztest.simulation.AcsConstants.*;").append(lineSeparator());
             writer.append("import static zdoom.Global").append(safeClassName).append(".*;").append(lineSeparator());
-            writer.append("import static zdoom.World").append(safeClassName).append(".*;").append(lineSeparator());
             writer.append(lineSeparator());
             writer.append("class Global").append(safeClassName).append(" {");
-            writer.append(globalConstants).append(lineSeparator()).append(lineSeparator());
-            if (global.length() > 0) {
-                writer.append(global).append(lineSeparator()).append(lineSeparator());
-            }
-            writer.append("\tpublic static void reset() {");
-            writer.append(globalInit).append(lineSeparator());
-            writer.append("\t}").append(lineSeparator());
-            writer.append("}").append(lineSeparator()).append(lineSeparator());
-
-            writer.append("class World").append(safeClassName).append(" {").append(lineSeparator());
-            if (world.length() > 0) {
-                writer.append(world).append(lineSeparator()).append(lineSeparator());
-            }
-            writer.append("\tpublic static void reset() {");
-            writer.append(worldInit).append(lineSeparator());
-            writer.append("\t}").append(lineSeparator());
+            writer.append(globalConstants).append(lineSeparator());
             writer.append("}").append(lineSeparator()).append(lineSeparator());
 
             writer.append("class Map").append(safeClassName)
                     .append(" extends VarContext<Map").append(safeClassName).append(".Scripts> {")
                     .append(lineSeparator());
+            if (global.length() > 0) {
+                writer.append(global).append(lineSeparator());
+            }
+            if (world.length() > 0) {
+                writer.append(world).append(lineSeparator());
+            }
             writer.append(mapVars).append(lineSeparator());
             writer.append(CREATE_MAIN_SCRIPT_CONTEXT.replace("<T>", "<Map" + safeClassName + ".Scripts>")).append(lineSeparator()).append(lineSeparator());
-            writer.append("private static List<Script<Scripts>> scripts() {").append(lineSeparator())
-                    .append("\treturn Arrays.asList(").append(lineSeparator())
+            writer.append("private static final ScriptTable<Scripts> SCRIPTS = new ScriptTable<>(Arrays.asList(").append(lineSeparator())
                     .append(scripts).append(lineSeparator())
-                    .append("\t);").append(lineSeparator())
-                    .append("}").append(lineSeparator()).append(lineSeparator());
+                    .append("));").append(lineSeparator()).append(lineSeparator());
             writer.append("public class Scripts extends ScriptContext<Scripts> {").append(lineSeparator());
             writer.append(SCRIPTS_BEGIN).append(lineSeparator()).append(lineSeparator());
             writer.append(map).append(lineSeparator());
             writer.append(additionalScriptJava).append(lineSeparator());
             writer.append("}").append(lineSeparator());
             writer.append("}").append(lineSeparator());
+            ConvertUtils.writeIfChanged(outputDir.resolve(outputFileName(file)), writer.toString());
         }
 
-        String leftOutFinal = dataPair.data.toString();
-        leftOutFinal = cleanupLeftoutData(leftOutFinal);
-        if (!leftOutFinal.isEmpty() && !";".equals(leftOutFinal)) {
-            throw new IllegalStateException(String.format("Didn't understood: %s%s", lineSeparator(), leftOutFinal));
+        if (!acsFile.notUnderstood.isEmpty()) {
+            throw new IllegalStateException(String.format("Didn't understood: %s%s",
+                    lineSeparator(), String.join(lineSeparator(), acsFile.notUnderstood)));
         }
     }
 
-    private static StringBuffer convertScriptBody(String body) {
-        Pattern print = Pattern.compile(
-                "(?<=\\W|_)(print|printbold|hudmessage|hudmessagebold)\\s*\\(([^;)]+)(?:;([^)]+))?\\)",
-                CASE_INSENSITIVE);
-        Pattern outputArg = Pattern.compile("\\S*([bcdfiklnsx]):([^,]+)\\S*(?:,)?");
-        ConvertUtils.DataPair bodyPair = ConvertUtils.tryReplace(new ConvertUtils.DataPair(body), print, printGroups -> {
-            String function = printGroups.group(1);
-            String output = printGroups.group(2);
-            String otherArgs = printGroups.group(3);
-
-            StringBuilder format = new StringBuilder();
-            StringBuilder outputArgs = new StringBuilder();
-
-            ConvertUtils.tryParseAndRemove(new ConvertUtils.DataPair(output), outputArg, outputGroups -> {
-                String type = outputGroups.group(1).trim().toLowerCase();
-                String value = outputGroups.group(2);
-                if (outputArgs.length() > 0) {
-                    outputArgs.append(", ");
-                }
-                switch (type) {
-                    case "b":
-                        format.append("%s");
-                        outputArgs.append("Integer.toBinaryString(").append(value).append(")");
-                        return;
-                    case "c":
-                        format.append("%c");
-                        outputArgs.append(value);
-                        return;
-                    case "d":
-                    case "i":
-                        format.append("%d");
-                        outputArgs.append(value);
-                        return;
-                    case "f":
-                        format.append("%f");
-                        outputArgs.append(value);
-                        return;
-                    case "k":
-                        format.append("[%s]");
-                        outputArgs.append(value);
-                        return;
-                    case "l":
-                        format.append("<localized:%s>");
-                        outputArgs.append(value);
-                        return;
-                    case "n":
-                        format.append("<printname:%s>");
-                        outputArgs.append(value);
-                        return;
-                    case "s":
-                        format.append("%s");
-                        outputArgs.append(value);
-                        return;
-                    case "x":
-                        format.append("%x");
-                        outputArgs.append(value);
-                        return;
-                    default:
-                        throw new IllegalArgumentException(String.format("Unknown type '%s'", type));
-                }
-            });
+    static String outputFileName(Path file) {
+        return file.getFileName().toString().replace(".", "_") + ".java";
+    }
+
+    private static String convertScriptBody(AcsFile.Body body) {
+        StringBuilder out = new StringBuilder(body.end - body.start);
+        convertCode(body.source, body.tokens, 0, body.tokens.size(), body.start, body.end, out);
+        return out.toString();
+    }
 
-            if (otherArgs != null && !otherArgs.trim().isEmpty()) {
-                otherArgs += ", ";
+    /**
+     * Appends source between {@code start} and {@code end} converted to Java,
+     * tokens {@code from}..{@code to} should be the ones in this range
+     */
+    private static void convertCode(String source, List<Token> tokens, int from, int to, int start, int end, StringBuilder out) {
+        int cursor = start;
+        int i = from;
+        while (i < to) {
+            Token token = tokens.get(i);
+            out.append(source, cursor, token.start);
+            int printEnd = PRINT_FUNCTIONS.contains(token.text.toLowerCase()) && token.kind == IDENTIFIER
+                    ? convertPrint(source, tokens, i, to, out)
+                    : -1;
+            if (printEnd >= 0) {
+                cursor = tokens.get(printEnd).end;
+                i = printEnd + 1;
             } else {
-                otherArgs = "";
+                out.append(convertToken(token));
+                cursor = token.end;
+                ++i;
             }
-
-            return String.format("%s(%s\"%s\", %s)", function, otherArgs, format, outputArgs);
-        });
-
-        bodyPair = ConvertUtils.tryReplace(bodyPair, Pattern.compile("(?<=\\W|_)bool(?=\\W|_)"), groups -> "boolean");
-        bodyPair = ConvertUtils.tryReplace(bodyPair, Pattern.compile("(?<=\\W|_)str(?=\\W|_)"), groups -> "String");
-        bodyPair = ConvertUtils.tryReplace(bodyPair, Pattern.compile("(?<=\\W|_)terminate(?=\\W|_)"), groups -> "terminate()");
-        bodyPair = ConvertUtils.tryReplace(bodyPair, Pattern.compile("(?<=\\W|_)class(?=\\W|_)"), groups -> "class__");
-        return bodyPair.data;
+        }
+        out.append(source, cursor, end);
     }
 
-    private static String cleanupLeftoutData(String leftOutFinal) {
-        int lastLen = -1;
-        while (lastLen != leftOutFinal.length()) {
-            lastLen = leftOutFinal.length();
-            leftOutFinal = leftOutFinal.replaceAll(";\\s*;", ";").trim();
+    private static String convertToken(Token token) {
+        if (token.kind != IDENTIFIER) return token.text;
+        switch (token.text) {
+            case "bool":
+                return "boolean";
+            case "str":
+                return "String";
+            case "terminate":
+                return "terminate()";
+            case "class":
+                return "class__";
+            default:
+                return token.text;
         }
-        return leftOutFinal;
     }
 
-    private static String convertArguments(String acsArguments) {
-        String arguments = acsArguments;
-        if (arguments != null) {
-            if (arguments.toLowerCase().equals("void")) {
-                arguments = "";
-            } else {
-                arguments = Stream.of(arguments.trim().split(","))
-                        .map(pair -> {
-                            String[] parts = pair.trim().split(" ", 2);
-                            String type = convertType(parts[0]);
-                            String name = parts[1];
-                            if ("class".equals(name)) {
-                                name = "class__";
-                            }
-                            return type + " " + name;
-                        })
-                        .collect(Collectors.joining(", "));
+    /**
+     * Converts a print like call, e.g. print(s:"a", d:b) to print("%s%d", "a", b)
+     * @return index of the closing parenthesis, or -1 if the call can't be converted
+     */
+    private static int convertPrint(String source, List<Token> tokens, int functionIndex, int to, StringBuilder out) {
+        int openIndex = functionIndex + 1;
+        if (openIndex >= to || !tokens.get(openIndex).isPunctuation('(')) return -1;
+
+        int closeIndex = -1;
+        int separatorIndex = -1; // the semicolon before arguments of hudmessage
+        List<Integer> commas = new ArrayList<>();
+        int depth = 0;
+        for (int i = openIndex + 1; i < to && closeIndex < 0; i++) {
+            Token token = tokens.get(i);
+            if (token.isPunctuation('(') || token.isPunctuation('[') || token.isPunctuation('{')) {
+                ++depth;
+            } else if (token.isPunctuation(')') && depth == 0) {
+                closeIndex = i;
+            } else if (token.isPunctuation(')') || token.isPunctuation(']') || token.isPunctuation('}')) {
+                --depth;
+            } else if (depth == 0 && separatorIndex < 0 && token.isPunctuation(';')) {
+                separatorIndex = i;
+            } else if (depth == 0 && separatorIndex < 0 && token.isPunctuation(',')) {
+                commas.add(i);
+            }
+        }
+        int outputEndIndex = separatorIndex >= 0 ? separatorIndex : closeIndex;
+        if (closeIndex < 0 || outputEndIndex == openIndex + 1) return -1;
+
+        StringBuilder format = new StringBuilder();
+        StringBuilder outputArgs = new StringBuilder();
+        commas.add(outputEndIndex);
+        int argumentIndex = openIndex + 1;
+        for (int argumentEndIndex : commas) {
+            if (argumentEndIndex - argumentIndex < 3
+                    || tokens.get(argumentIndex).kind != IDENTIFIER
+                    || !tokens.get(argumentIndex + 1).isPunctuation(':')) {
+                throw new IllegalArgumentException(String.format("Unknown print argument '%s'",
+                        source.substring(tokens.get(argumentIndex).start, tokens.get(argumentEndIndex).start).trim()));
+            }
+            String type = tokens.get(argumentIndex).text.toLowerCase();
+            StringBuilder value = new StringBuilder();
+            convertCode(source, tokens, argumentIndex + 2, argumentEndIndex,
+                    tokens.get(argumentIndex + 1).end, tokens.get(argumentEndIndex).start, value);
+            if (outputArgs.length() > 0) {
+                outputArgs.append(", ");
+            }
+            appendOutputArgument(type, value, format, outputArgs);
+            argumentIndex = argumentEndIndex + 1;
+        }
+
+        String otherArgs = "";
+        if (separatorIndex >= 0) {
+            StringBuilder converted = new StringBuilder();
+            convertCode(source, tokens, separatorIndex + 1, closeIndex,
+                    tokens.get(separatorIndex).end, tokens.get(closeIndex).start, converted);
+            if (!converted.toString().trim().isEmpty()) {
+                otherArgs = converted + ", ";
             }
-        } else {
-            arguments = "";
         }
-        return arguments;
+
+        out.append(String.format("%s(%s\"%s\", %s)", tokens.get(functionIndex).text, otherArgs, format, outputArgs));
+        return closeIndex;
+    }
+
+    private static void appendOutputArgument(String type, CharSequence value, StringBuilder format, StringBuilder outputArgs) {
+        switch (type) {
+            case "b":
+                format.append("%s");
+                outputArgs.append("Integer.toBinaryString(").append(value).append(")");
+                return;
+            case "c":
+                format.append("%c");
+                outputArgs.append(value);
+                return;
+            case "d":
+            case "i":
+                format.append("%d");
+                outputArgs.append(value);
+                return;
+            case "f":
+                format.append("%f");
+                outputArgs.append(value);
+                return;
+            case "k":
+                format.append("[%s]");
+                outputArgs.append(value);
+                return;
+            case "l":
+                format.append("<localized:%s>");
+                outputArgs.append(value);
+                return;
+            case "n":
+                format.append("<printname:%s>");
+                outputArgs.append(value);
+                return;
+            case "s":
+                format.append("%s");
+                outputArgs.append(value);
+                return;
+            case "x":
+                format.append("%x");
+                outputArgs.append(value);
+                return;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown type '%s'", type));
+        }
+    }
+
+    private static String convertArguments(List<AcsFile.Parameter> parameters) {
+        return parameters.stream()
+                .map(parameter -> {
+                    String name = parameter.name;
+                    if ("class".equals(name)) {
+                        name = "class__";
+                    }
+                    return convertType(parameter.type) + " " + name;
+                })
+                .collect(Collectors.joining(", "));
     }
 
     private static String convertType(String acsType) {
         switch (acsType.trim().toLowerCase()) {
-            case "/**test_type:bool**/int":
             case "bool":
                 return "boolean";
-            case "/**test_type:str**/int":
             case "str":
                 return "String";
             default:
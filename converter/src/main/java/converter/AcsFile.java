@@ -0,0 +1,110 @@
+package converter;
+
+import converter.AcsLexer.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Top level declarations of an ACS file, in the order they appear in it
+ */
+class AcsFile {
+    final List<Constant> constants = new ArrayList<>();
+    final List<ScopedVariable> scopedVariables = new ArrayList<>();
+    final List<MapVariable> mapVariables = new ArrayList<>();
+    final List<Script> scripts = new ArrayList<>();
+    final List<Function> functions = new ArrayList<>();
+    final List<String> testOnlyJava = new ArrayList<>();
+    final List<String> notUnderstood = new ArrayList<>();
+
+    static class Constant {
+        final String name;
+        final String value;
+
+        Constant(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    static class ScopedVariable {
+        final boolean isGlobal; // otherwise it is a world variable
+        final String type;
+        final String name; // including [] for arrays
+
+        ScopedVariable(boolean isGlobal, String type, String name) {
+            this.isGlobal = isGlobal;
+            this.type = type;
+            this.name = name;
+        }
+    }
+
+    static class MapVariable {
+        final String type;
+        final String name;
+        final String sizes; // e.g. "[4][2]", empty if the variable is not an array
+        final String value; // null if there is no initializer
+
+        MapVariable(String type, String name, String sizes, String value) {
+            this.type = type;
+            this.name = name;
+            this.sizes = sizes;
+            this.value = value;
+        }
+    }
+
+    static class Parameter {
+        final String type; // ACS type, or the one given by a TEST_TYPE comment
+        final String name;
+
+        Parameter(String type, String name) {
+            this.type = type;
+            this.name = name;
+        }
+    }
+
+    static class Script {
+        final String name;
+        final List<Parameter> parameters;
+        final List<String> types;
+        final Body body;
+
+        Script(String name, List<Parameter> parameters, List<String> types, Body body) {
+            this.name = name;
+            this.parameters = parameters;
+            this.types = types;
+            this.body = body;
+        }
+    }
+
+    static class Function {
+        final String returnType;
+        final String name;
+        final List<Parameter> parameters;
+        final Body body;
+
+        Function(String returnType, String name, List<Parameter> parameters, Body body) {
+            this.returnType = returnType;
+            this.name = name;
+            this.parameters = parameters;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Code between braces of a script or a function, converted token by token when the Java source is written
+     */
+    static class Body {
+        final String source;
+        final List<Token> tokens;
+        final int start;
+        final int end;
+
+        Body(String source, List<Token> tokens, int start, int end) {
+            this.source = source;
+            this.tokens = tokens;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
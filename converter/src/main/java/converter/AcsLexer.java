@@ -0,0 +1,155 @@
+package converter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits ACS source into tokens in a single pass. Whitespace is not tokenized, but tokens keep their
+ * offsets, so the original text between them can always be recovered from the source.
+ */
+class AcsLexer {
+    private final String source;
+    private final List<Token> tokens = new ArrayList<>();
+    private int position = 0;
+
+    private AcsLexer(String source) {
+        this.source = source;
+    }
+
+    static List<Token> tokenize(String source) {
+        AcsLexer lexer = new AcsLexer(source);
+        lexer.run();
+        return lexer.tokens;
+    }
+
+    private void run() {
+        while (position < source.length()) {
+            char c = source.charAt(position);
+            int start = position;
+            if (Character.isWhitespace(c)) {
+                ++position;
+                continue;
+            }
+
+            TokenKind kind;
+            if (c == '/' && peek(1) == '/') {
+                skipUntilLineEnd();
+                kind = TokenKind.COMMENT;
+            } else if (c == '/' && peek(1) == '*') {
+                int end = source.indexOf("*/", position + 2);
+                if (end < 0) throw error(start, "Unterminated comment");
+                position = end + 2;
+                kind = TokenKind.COMMENT;
+            } else if (c == '"' || c == '\'') {
+                skipQuoted(c);
+                kind = TokenKind.STRING;
+            } else if (c == '#' && isIdentifierStart(peek(1))) {
+                ++position;
+                skipIdentifier();
+                kind = TokenKind.DIRECTIVE;
+            } else if (isIdentifierStart(c)) {
+                skipIdentifier();
+                kind = TokenKind.IDENTIFIER;
+            } else if (Character.isDigit(c)) {
+                // fixed point and hexadecimal numbers are copied as they are, so suffixes and dots are just consumed
+                while (position < source.length()
+                        && (Character.isLetterOrDigit(source.charAt(position)) || source.charAt(position) == '.'
+                        || source.charAt(position) == '_')) {
+                    ++position;
+                }
+                kind = TokenKind.NUMBER;
+            } else {
+                ++position;
+                kind = TokenKind.PUNCTUATION;
+            }
+            tokens.add(new Token(kind, source, start, position));
+        }
+    }
+
+    private char peek(int offset) {
+        int index = position + offset;
+        return index < source.length() ? source.charAt(index) : '\0';
+    }
+
+    private void skipUntilLineEnd() {
+        while (position < source.length() && source.charAt(position) != '\n' && source.charAt(position) != '\r') {
+            ++position;
+        }
+    }
+
+    private void skipQuoted(char quote) {
+        int start = position;
+        ++position;
+        while (position < source.length()) {
+            char c = source.charAt(position++);
+            if (c == '\\') {
+                ++position;
+            } else if (c == quote) {
+                return;
+            }
+        }
+        throw error(start, "Unterminated string");
+    }
+
+    private void skipIdentifier() {
+        while (position < source.length() && isIdentifierPart(source.charAt(position))) {
+            ++position;
+        }
+    }
+
+    private IllegalStateException error(int offset, String message) {
+        return new IllegalStateException(String.format("%s at line %d", message, lineOf(source, offset)));
+    }
+
+    static int lineOf(String source, int offset) {
+        int line = 1;
+        for (int i = 0; i < offset; i++) {
+            if (source.charAt(i) == '\n') ++line;
+        }
+        return line;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    enum TokenKind {
+        IDENTIFIER,
+        NUMBER,
+        STRING,
+        DIRECTIVE,
+        COMMENT,
+        PUNCTUATION
+    }
+
+    static class Token {
+        final TokenKind kind;
+        final String text;
+        final int start;
+        final int end;
+
+        private Token(TokenKind kind, String source, int start, int end) {
+            this.kind = kind;
+            this.text = source.substring(start, end);
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean isPunctuation(char c) {
+            return kind == TokenKind.PUNCTUATION && text.charAt(0) == c;
+        }
+
+        boolean isKeyword(String keyword) {
+            return kind == TokenKind.IDENTIFIER && text.equalsIgnoreCase(keyword);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
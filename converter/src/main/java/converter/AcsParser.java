@@ -0,0 +1,299 @@
+package converter;
+
+import converter.AcsLexer.Token;
+import converter.AcsLexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recursive descent parser of top level ACS declarations. Bodies of scripts and functions are only
+ * matched by braces, as they are converted to Java token by token.
+ */
+class AcsParser {
+    private static final String TEST_ONLY_SCRIPTS = "/**TEST_ONLY_SCRIPTS";
+    private static final Pattern TEST_TYPE = Pattern.compile("/\\*\\*TEST_TYPE:(\\w+)\\*\\*/");
+
+    private final String source;
+    private final List<Token> tokens;
+    private final AcsFile file = new AcsFile();
+    private int index = 0;
+
+    private AcsParser(String source) {
+        this.source = source;
+        this.tokens = AcsLexer.tokenize(source);
+    }
+
+    static AcsFile parse(String source) {
+        AcsParser parser = new AcsParser(source);
+        parser.parseFile();
+        return parser.file;
+    }
+
+    private void parseFile() {
+        while (index < tokens.size()) {
+            int declarationStart = index;
+            try {
+                parseDeclaration();
+            } catch (UnexpectedTokenException e) {
+                Token first = tokens.get(declarationStart);
+                int lineEnd = lineEnd(first.start);
+                file.notUnderstood.add(String.format("line %d: %s",
+                        AcsLexer.lineOf(source, first.start), source.substring(first.start, lineEnd).trim()));
+                index = declarationStart + 1;
+                skipLine(lineEnd);
+            }
+        }
+    }
+
+    private void parseDeclaration() throws UnexpectedTokenException {
+        Token token = tokens.get(index);
+        if (token.kind == TokenKind.COMMENT) {
+            ++index;
+            if (token.text.startsWith(TEST_ONLY_SCRIPTS) && token.text.endsWith("**/")
+                    && token.text.length() > TEST_ONLY_SCRIPTS.length() + 3
+                    && Character.isWhitespace(token.text.charAt(TEST_ONLY_SCRIPTS.length()))) {
+                String java = token.text.substring(TEST_ONLY_SCRIPTS.length(), token.text.length() - 3);
+                file.testOnlyJava.add(trimStart(java));
+            }
+        } else if (token.kind == TokenKind.DIRECTIVE) {
+            parseDirective();
+        } else if (token.isKeyword("script")) {
+            parseScript();
+        } else if (token.isKeyword("function")) {
+            parseFunction();
+        } else if (token.isKeyword("global") || token.isKeyword("world")) {
+            parseScopedVariable();
+        } else if (isVariableType(token)) {
+            parseMapVariable();
+        } else if (token.isPunctuation(';')) {
+            ++index;
+        } else {
+            throw new UnexpectedTokenException();
+        }
+    }
+
+    private void parseDirective() throws UnexpectedTokenException {
+        Token directive = next();
+        int lineEnd = lineEnd(directive.start);
+        switch (directive.text.toLowerCase()) {
+            case "#library":
+                break;
+            case "#include": {
+                Token path = expect(TokenKind.STRING);
+                if (!path.text.equalsIgnoreCase("\"zcommon.acs\"")) throw new UnexpectedTokenException();
+                break;
+            }
+            case "#define":
+            case "#libdefine": {
+                Token name = expect(TokenKind.IDENTIFIER);
+                if (name.start >= lineEnd) throw new UnexpectedTokenException();
+                String value = source.substring(name.end, lineEnd).trim();
+                if (value.isEmpty()) throw new UnexpectedTokenException();
+                file.constants.add(new AcsFile.Constant(name.text, value));
+                break;
+            }
+            default:
+                throw new UnexpectedTokenException();
+        }
+        skipLine(lineEnd);
+    }
+
+    private void parseScript() throws UnexpectedTokenException {
+        next(); // script
+        Token nameToken = next();
+        String name;
+        if (nameToken.kind == TokenKind.STRING && nameToken.text.startsWith("\"")) {
+            name = nameToken.text.substring(1, nameToken.text.length() - 1);
+        } else if (nameToken.kind == TokenKind.IDENTIFIER || nameToken.kind == TokenKind.NUMBER) {
+            name = nameToken.text;
+        } else {
+            throw new UnexpectedTokenException();
+        }
+
+        List<AcsFile.Parameter> parameters = new ArrayList<>();
+        if (peekPunctuation('(')) {
+            parameters = parseParameters();
+        }
+
+        List<String> types = new ArrayList<>();
+        while (peek() != null && peek().kind == TokenKind.IDENTIFIER) {
+            types.add(next().text.toUpperCase());
+        }
+
+        file.scripts.add(new AcsFile.Script(name, parameters, types, parseBody()));
+    }
+
+    private void parseFunction() throws UnexpectedTokenException {
+        next(); // function
+        String returnType = expect(TokenKind.IDENTIFIER).text;
+        String name = expect(TokenKind.IDENTIFIER).text;
+        if (!peekPunctuation('(')) throw new UnexpectedTokenException();
+        List<AcsFile.Parameter> parameters = parseParameters();
+        file.functions.add(new AcsFile.Function(returnType, name, parameters, parseBody()));
+    }
+
+    private List<AcsFile.Parameter> parseParameters() throws UnexpectedTokenException {
+        expectPunctuation('(');
+        List<AcsFile.Parameter> parameters = new ArrayList<>();
+        if (peek() != null && peek().isKeyword("void")) {
+            next();
+            expectPunctuation(')');
+            return parameters;
+        }
+
+        do {
+            String testType = null;
+            Token type = next();
+            while (type.kind == TokenKind.COMMENT) {
+                Matcher testTypeMatcher = TEST_TYPE.matcher(type.text);
+                if (testTypeMatcher.matches()) {
+                    testType = testTypeMatcher.group(1);
+                }
+                type = next();
+            }
+            if (type.kind != TokenKind.IDENTIFIER) throw new UnexpectedTokenException();
+            String name = expect(TokenKind.IDENTIFIER).text;
+            parameters.add(new AcsFile.Parameter(testType != null ? testType : type.text, name));
+        } while (tryPunctuation(','));
+        expectPunctuation(')');
+        return parameters;
+    }
+
+    private AcsFile.Body parseBody() throws UnexpectedTokenException {
+        Token open = expectPunctuation('{');
+        int bodyStart = index;
+        int depth = 1;
+        while (true) {
+            Token token = next();
+            if (token.isPunctuation('{')) {
+                ++depth;
+            } else if (token.isPunctuation('}') && --depth == 0) {
+                return new AcsFile.Body(source, tokens.subList(bodyStart, index - 1), open.end, token.start);
+            }
+        }
+    }
+
+    private void parseScopedVariable() throws UnexpectedTokenException {
+        boolean isGlobal = next().isKeyword("global");
+        Token type = next();
+        if (!isVariableType(type)) throw new UnexpectedTokenException();
+        expect(TokenKind.NUMBER);
+        expectPunctuation(':');
+        Token name = expect(TokenKind.IDENTIFIER);
+        int nameEnd = skipBrackets(name.end);
+        expectPunctuation(';');
+        file.scopedVariables.add(new AcsFile.ScopedVariable(isGlobal, type.text, source.substring(name.start, nameEnd)));
+    }
+
+    private void parseMapVariable() throws UnexpectedTokenException {
+        Token type = next();
+        Token name = expect(TokenKind.IDENTIFIER);
+        int sizesStart = peek() != null ? peek().start : name.end;
+        int sizesEnd = skipBrackets(name.end);
+        String sizes = sizesEnd > name.end ? source.substring(sizesStart, sizesEnd) : "";
+
+        String value = null;
+        if (tryPunctuation('=')) {
+            Token first = peek();
+            int depth = 0;
+            Token token;
+            while (!(token = next()).isPunctuation(';') || depth > 0) {
+                if (token.isPunctuation('{') || token.isPunctuation('(')) {
+                    ++depth;
+                } else if (token.isPunctuation('}') || token.isPunctuation(')')) {
+                    --depth;
+                }
+            }
+            // the value keeps whitespace before the semicolon, same as it was written
+            value = source.substring(first.start, token.start);
+            if (value.trim().isEmpty()) throw new UnexpectedTokenException();
+        } else {
+            expectPunctuation(';');
+        }
+        file.mapVariables.add(new AcsFile.MapVariable(type.text, name.text, sizes, value));
+    }
+
+    /**
+     * Consumes array sizes, e.g. [4][2]
+     * @return end of the last closing bracket or {@code end} if there were no brackets
+     */
+    private int skipBrackets(int end) throws UnexpectedTokenException {
+        while (peekPunctuation('[')) {
+            next();
+            Token token;
+            while (!(token = next()).isPunctuation(']')) {
+                if (token.isPunctuation('[') || token.isPunctuation(';')) throw new UnexpectedTokenException();
+            }
+            end = token.end;
+        }
+        return end;
+    }
+
+    private static boolean isVariableType(Token token) {
+        return token.isKeyword("int") || token.isKeyword("bool") || token.isKeyword("str");
+    }
+
+    private Token peek() {
+        return index < tokens.size() ? tokens.get(index) : null;
+    }
+
+    private boolean peekPunctuation(char c) {
+        Token token = peek();
+        return token != null && token.isPunctuation(c);
+    }
+
+    private boolean tryPunctuation(char c) {
+        if (!peekPunctuation(c)) return false;
+        ++index;
+        return true;
+    }
+
+    private Token next() throws UnexpectedTokenException {
+        if (index >= tokens.size()) throw new UnexpectedTokenException();
+        return tokens.get(index++);
+    }
+
+    private Token expect(TokenKind kind) throws UnexpectedTokenException {
+        Token token = next();
+        if (token.kind != kind) throw new UnexpectedTokenException();
+        return token;
+    }
+
+    private Token expectPunctuation(char c) throws UnexpectedTokenException {
+        Token token = next();
+        if (!token.isPunctuation(c)) throw new UnexpectedTokenException();
+        return token;
+    }
+
+    private void skipLine(int lineEnd) {
+        while (index < tokens.size() && tokens.get(index).start < lineEnd) {
+            ++index;
+        }
+    }
+
+    private int lineEnd(int offset) {
+        int end = offset;
+        while (end < source.length() && source.charAt(end) != '\n' && source.charAt(end) != '\r') {
+            ++end;
+        }
+        return end;
+    }
+
+    private static String trimStart(String text) {
+        int start = 0;
+        while (start < text.length() && Character.isWhitespace(text.charAt(start))) {
+            ++start;
+        }
+        return text.substring(start);
+    }
+
+    // the declaration is reported as not understood, parsing continues from the next line
+    private static class UnexpectedTokenException extends Exception {
+        UnexpectedTokenException() {
+            super(null, null, false, false);
+        }
+    }
+}
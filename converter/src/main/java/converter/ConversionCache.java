@@ -0,0 +1,204 @@
+package converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.lang.System.lineSeparator;
+
+/**
+ * Persistent record of which generated sources were converted from which lumps, so a lump is only converted
+ * again when its content or the converter itself has changed. Generated sources of unchanged lumps keep
+ * their modification times, so compilation after the conversion can skip them too.
+ * <p>
+ * The record is kept in the output directory. Call {@link #save()} after converting all lumps:
+ * it deletes sources generated from lumps that were not converted during this run, e.g. deleted ones.
+ */
+public final class ConversionCache {
+    static final String FILE_NAME = ".conversion-cache";
+    private static final String HEADER = "ztest-conversion-cache 1";
+
+    private static String converterVersion = null;
+
+    private final Path outputDir;
+    private final boolean isValid;
+    private final Map<String, Entry> previousEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private ConversionCache(Path outputDir, boolean isValid, Map<String, Entry> previousEntries) {
+        this.outputDir = outputDir;
+        this.isValid = isValid;
+        this.previousEntries = previousEntries;
+    }
+
+    public static ConversionCache open(Path outputDir) throws IOException {
+        Path file = outputDir.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return new ConversionCache(outputDir, false, Collections.emptyMap());
+        }
+
+        List<String> lines = Files.readAllLines(file);
+        if (lines.isEmpty() || !lines.get(0).startsWith(HEADER + " ")) {
+            return new ConversionCache(outputDir, false, Collections.emptyMap());
+        }
+        // entries are still read when the converter has changed, so their outputs can be cleaned up
+        boolean isValid = lines.get(0).equals(HEADER + " " + getConverterVersion());
+        Map<String, Entry> entries = new HashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] parts = line.split("\t", 4);
+            if (parts.length != 4) throw new IOException("Malformed conversion cache line: " + line);
+            entries.put(parts[3], new Entry(parts[0], parts[1], parts[2]));
+        }
+        return new ConversionCache(outputDir, isValid, entries);
+    }
+
+    public void convertAcs(Path file) throws IOException {
+        convert(file, AcsConverter.outputFileName(file), () -> {
+            AcsConverter.convertAcs(file, outputDir);
+            return "";
+        });
+    }
+
+    /**
+     * @return same as {@link DecorateConverter#convertDecorate(Path, Path)}
+     */
+    public String convertDecorate(Path file) throws IOException {
+        return convert(file, DecorateConverter.outputFileName(file), () -> DecorateConverter.convertDecorate(file, outputDir));
+    }
+
+    private String convert(Path file, String outputFileName, Conversion conversion) throws IOException {
+        String key = file.toAbsolutePath().normalize().toString();
+        String hash = hash(Files.readAllBytes(file));
+
+        Entry previous = previousEntries.get(key);
+        if (isValid && previous != null && previous.hash.equals(hash) && previous.outputFileName.equals(outputFileName)
+                && Files.isRegularFile(outputDir.resolve(outputFileName))) {
+            entries.put(key, previous);
+            return previous.result;
+        }
+
+        String result = conversion.convert();
+        entries.put(key, new Entry(hash, outputFileName, result));
+        return result;
+    }
+
+    /**
+     * Deletes outputs of lumps that were not converted since the cache was opened and writes the cache
+     */
+    public void save() throws IOException {
+        Set<String> currentOutputs = new HashSet<>();
+        entries.values().forEach(entry -> currentOutputs.add(entry.outputFileName));
+        for (Map.Entry<String, Entry> previous : previousEntries.entrySet()) {
+            String outputFileName = previous.getValue().outputFileName;
+            if (!entries.containsKey(previous.getKey()) && !currentOutputs.contains(outputFileName)) {
+                Files.deleteIfExists(outputDir.resolve(outputFileName));
+            }
+        }
+
+        StringBuilder content = new StringBuilder();
+        content.append(HEADER).append(" ").append(getConverterVersion()).append(lineSeparator());
+        new TreeMap<>(entries).forEach((key, entry) -> content
+                .append(entry.hash).append('\t')
+                .append(entry.outputFileName).append('\t')
+                .append(entry.result).append('\t')
+                .append(key).append(lineSeparator()));
+        ConvertUtils.writeIfChanged(outputDir.resolve(FILE_NAME), content.toString());
+    }
+
+    /**
+     * Hash of the jar or the class directory the converter is loaded from, so any change of its code
+     * including nested and anonymous classes invalidates the cache
+     */
+    private static synchronized String getConverterVersion() throws IOException {
+        if (converterVersion == null) {
+            CodeSource codeSource = ConversionCache.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null) throw new IOException("Can't find where the converter is loaded from");
+            Path location;
+            try {
+                location = Paths.get(codeSource.getLocation().toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                throw new IOException("Can't read the converter from " + codeSource.getLocation(), e);
+            }
+
+            MessageDigest digest = newDigest();
+            if (Files.isDirectory(location)) {
+                try (Stream<Path> paths = Files.walk(location)) {
+                    // sorted, so the hash doesn't depend on the order of directory entries
+                    Iterator<Path> files = paths.filter(Files::isRegularFile).sorted().iterator();
+                    while (files.hasNext()) {
+                        Path file = files.next();
+                        digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                        digestFile(digest, file);
+                    }
+                }
+            } else {
+                digestFile(digest, location);
+            }
+            converterVersion = toHex(digest.digest());
+        }
+        return converterVersion;
+    }
+
+    private static void digestFile(MessageDigest digest, Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private static String hash(byte[] content) {
+        return toHex(newDigest().digest(content));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private interface Conversion {
+        String convert() throws IOException;
+    }
+
+    private static class Entry {
+        final String hash;
+        final String outputFileName;
+        final String result; // factories class for DECORATE lumps
+
+        private Entry(String hash, String outputFileName, String result) {
+            this.hash = hash;
+            this.outputFileName = outputFileName;
+            this.result = result;
+        }
+    }
+}
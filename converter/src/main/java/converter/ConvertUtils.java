@@ -1,5 +1,10 @@
 package converter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.MatchResult;
@@ -49,6 +54,18 @@ class ConvertUtils {
         return new DataPair(leftoutBody);
     }
 
+    /**
+     * Keeps the file untouched when it already has the given content, so tools after the conversion
+     * can see that nothing has changed from its modification time
+     */
+    static void writeIfChanged(Path file, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        if (Files.isRegularFile(file) && Files.size(file) == bytes.length && Arrays.equals(Files.readAllBytes(file), bytes)) {
+            return;
+        }
+        Files.write(file, bytes);
+    }
+
     static StringBuffer removeByPattern(StringBuffer data, Pattern lineCommentPattern) {
         StringBuffer out = new StringBuffer();
         Matcher replacer = lineCommentPattern.matcher(data);
@@ -1,9 +1,14 @@
 package converter;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -12,12 +17,19 @@ import static java.lang.System.lineSeparator;
 import static java.util.regex.Pattern.*;
 
 public class DecorateConverter {
+    static final String FACTORIES_INDEX_CLASS = "DecorateFactories";
+
     private DecorateConverter() {}
 
-    public static void convertDecorate(Path file, Path outputDir) throws IOException {
-        StringBuffer data = new StringBuffer(new String(Files.readAllBytes(file)));
+    /**
+     * @return name of the generated class registering factories of the converted classes,
+     *         it should be passed to {@link #writeFactoriesIndex(Collection, Path)}
+     */
+    public static String convertDecorate(Path file, Path outputDir) throws IOException {
+        StringBuffer data = new StringBuffer(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
         StringBuilder converted = new StringBuilder(data.length());
         StringBuilder additionalJava = new StringBuilder();
+        List<String> classNames = new ArrayList<>();
 
         Pattern additionalActors = Pattern.compile(
                 "^\\s*/\\*\\*TEST_ONLY([\\S\\s]+?)\\*\\*/$",
@@ -54,6 +66,9 @@ public class DecorateConverter {
             } else {
                 understood = false;
             }
+            if (understood) {
+                classNames.add(name);
+            }
 
             if (understood) {
                 return leftOutBody.toString();
@@ -67,7 +82,8 @@ public class DecorateConverter {
             throw new IllegalStateException(String.format("Didn't understood: %s%s", lineSeparator(), leftOutFinal));
         }
 
-        try (Writer writer = Files.newBufferedWriter(outputDir.resolve(file.getFileName() + ".java"))) {
+        String factoriesClass = factoriesClassName(file);
+        try (StringWriter writer = new StringWriter()) {
             writer.append("package zdoom;")
                     .append(lineSeparator()).append(lineSeparator());
             writer.append("import com.github.tarcv.ztest.simulation.*;")
@@ -76,7 +92,52 @@ public class DecorateConverter {
                     .append(lineSeparator()).append(lineSeparator());
             writer.write(converted.toString());
             writer.append(additionalJava).append(lineSeparator());
+            writeFactories(writer, factoriesClass, classNames);
+            writeIfChanged(outputDir.resolve(outputFileName(file)), writer.toString());
         }
+        return factoriesClass;
+    }
+
+    static String outputFileName(Path file) {
+        return file.getFileName() + ".java";
+    }
+
+    /**
+     * Writes the class through which the simulation finds factories of all converted DECORATE classes
+     */
+    public static void writeFactoriesIndex(Collection<String> factoriesClasses, Path outputDir) throws IOException {
+        try (StringWriter writer = new StringWriter()) {
+            writer.append("package zdoom;")
+                    .append(lineSeparator()).append(lineSeparator());
+            writer.append("import com.github.tarcv.ztest.simulation.ClassFactories;")
+                    .append(lineSeparator()).append(lineSeparator());
+            writer.append("public class ").append(FACTORIES_INDEX_CLASS)
+                    .append(" implements ClassFactories.Provider {").append(lineSeparator());
+            writer.append("\t@Override").append(lineSeparator())
+                    .append("\tpublic void registerAll(ClassFactories factories) {").append(lineSeparator());
+            for (String factoriesClass : factoriesClasses) {
+                writer.append("\t\t").append(factoriesClass).append(".registerAll(factories);").append(lineSeparator());
+            }
+            writer.append("\t}").append(lineSeparator());
+            writer.append("}").append(lineSeparator());
+            writeIfChanged(outputDir.resolve(FACTORIES_INDEX_CLASS + ".java"), writer.toString());
+        }
+    }
+
+    private static void writeFactories(Writer writer, String factoriesClass, List<String> classNames) throws IOException {
+        writer.append("class ").append(factoriesClass).append(" {").append(lineSeparator());
+        writer.append("\tstatic void registerAll(ClassFactories factories) {").append(lineSeparator());
+        for (String name : classNames) {
+            writer.append("\t\tfactories.register(\"").append(name).append("\", ")
+                    .append(name).append(".class, ")
+                    .append(name).append("::new);").append(lineSeparator());
+        }
+        writer.append("\t}").append(lineSeparator());
+        writer.append("}").append(lineSeparator());
+    }
+
+    private static String factoriesClassName(Path file) {
+        return file.getFileName().toString().replaceAll("\\W", "_") + "_Factories";
     }
 
     private static StringBuffer convertActor(StringBuffer leftOutBody, StringBuilder converted, String name, String parent) {
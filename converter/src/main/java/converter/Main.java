@@ -4,24 +4,20 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 
-import static converter.AcsConverter.convertAcs;
-import static converter.DecorateConverter.convertDecorate;
 import static java.nio.file.FileVisitResult.CONTINUE;
 import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
 
 public class Main {
     public static void main(String[] args) throws IOException {
         Path outputDir = new File(".").toPath();
+        List<Path> files = new ArrayList<>();
         Files.walkFileTree(Paths.get(args[0]), new FileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                String lumpName = file.getFileName().toString().toUpperCase();
-                if (lumpName.endsWith(".ACS")) {
-                    convertAcs(file, outputDir);
-                } if (lumpName.startsWith("DECORATE")) {
-                    convertDecorate(file, outputDir);
-                }
+                files.add(file);
                 return CONTINUE;
             }
 
@@ -41,5 +37,6 @@ public class Main {
                 return CONTINUE;
             }
         });
+        ParallelConverter.convertAll(files, outputDir);
     }
 }
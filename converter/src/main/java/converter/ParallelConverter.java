@@ -0,0 +1,112 @@
+package converter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static java.lang.System.lineSeparator;
+
+/**
+ * Converts ACS and DECORATE lumps of a mod on a fork-join pool. Each lump is converted independently,
+ * so the generated sources don't depend on the order in which conversions finish.
+ */
+public final class ParallelConverter {
+    private ParallelConverter() {
+    }
+
+    public static void convertAll(Collection<Path> files, Path outputDir) throws IOException {
+        convertAll(files, outputDir, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Converts the lumps among the given files and writes the DECORATE factories index.
+     * Files that are neither ACS nor DECORATE lumps are ignored.
+     * @throws IllegalStateException listing every lump that failed to convert, after all lumps were tried
+     */
+    public static void convertAll(Collection<Path> files, Path outputDir, int parallelism) throws IOException {
+        List<Path> acsFiles = new ArrayList<>();
+        List<Path> decorateFiles = new ArrayList<>();
+        Map<String, Path> outputs = new HashMap<>();
+        for (Path file : files) {
+            String lumpName = file.getFileName().toString().toUpperCase();
+            String outputFileName;
+            if (lumpName.endsWith(".ACS")) {
+                acsFiles.add(file);
+                outputFileName = AcsConverter.outputFileName(file);
+            } else if (lumpName.startsWith("DECORATE")) {
+                decorateFiles.add(file);
+                outputFileName = DecorateConverter.outputFileName(file);
+            } else {
+                continue;
+            }
+            Path otherFile = outputs.put(outputFileName, file);
+            if (otherFile != null) {
+                throw new IllegalStateException(String.format(
+                        "Both %s and %s would be converted to %s", otherFile, file, outputFileName));
+            }
+        }
+
+        ConversionCache cache = ConversionCache.open(outputDir);
+        // errors are recorded by the tasks themselves, as fork-join tasks rethrow copies of exceptions
+        Map<Path, Exception> errors = new ConcurrentSkipListMap<>();
+        List<ForkJoinTask<String>> tasks = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Path file : acsFiles) {
+                tasks.add(pool.submit(() -> convert(file, errors, () -> {
+                    cache.convertAcs(file);
+                    return null;
+                })));
+            }
+            for (Path file : decorateFiles) {
+                tasks.add(pool.submit(() -> convert(file, errors, () -> cache.convertDecorate(file))));
+            }
+
+            List<String> factoriesClasses = new ArrayList<>();
+            for (ForkJoinTask<String> task : tasks) {
+                String result = task.join();
+                if (result != null) {
+                    factoriesClasses.add(result);
+                }
+            }
+            if (!errors.isEmpty()) {
+                throw conversionFailed(errors);
+            }
+
+            cache.save();
+            if (!factoriesClasses.isEmpty()) {
+                Collections.sort(factoriesClasses);
+                DecorateConverter.writeFactoriesIndex(factoriesClasses, outputDir);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String convert(Path file, Map<Path, Exception> errors, Callable<String> conversion) {
+        try {
+            return conversion.call();
+        } catch (Exception e) {
+            errors.put(file, e);
+            return null;
+        }
+    }
+
+    private static IllegalStateException conversionFailed(Map<Path, Exception> errors) {
+        StringBuilder message = new StringBuilder(String.format("Failed to convert %d file(s):", errors.size()));
+        errors.forEach((file, error) -> message.append(lineSeparator())
+                .append(file).append(": ").append(error.getMessage()));
+        IllegalStateException exception = new IllegalStateException(message.toString());
+        errors.values().forEach(exception::addSuppressed);
+        return exception;
+    }
+}
@@ -0,0 +1,381 @@
+package converter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes PK3 (zip) archives that are byte-identical for the same content: entries are written in name order,
+ * with a fixed timestamp and no extra fields.
+ * <p>
+ * Already compressed media lumps are stored, other lumps are deflated on a fork-join pool. Compressed data
+ * of entries that didn't change since the previous archive at the same path is copied from it
+ * instead of being compressed again.
+ */
+public final class Pk3Writer {
+    private static final Set<String> STORED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "png", "jpg", "jpeg", "ogg", "flac", "mp3", "opus", "zip", "pk3", "pk7", "7z"));
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int DOS_TIME = 0;
+    private static final int DOS_DATE = (1 << 5) | 1; // 1980-01-01, the earliest date zip can hold
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+    private Pk3Writer() {
+    }
+
+    public static void write(SortedMap<String, File> entries, File archive) throws IOException {
+        write(entries, archive, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param entries files by their paths inside the archive, separated by '/'
+     */
+    public static void write(SortedMap<String, File> entries, File archive, int parallelism) throws IOException {
+        if (entries.size() > 0xFFFF) throw new IllegalArgumentException("Too many entries for a zip archive");
+
+        Path archivePath = archive.toPath();
+        Path tempPath = archivePath.resolveSibling(archivePath.getFileName() + ".tmp");
+        Files.createDirectories(archivePath.toAbsolutePath().getParent());
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (RandomAccessFile previous = archive.isFile() ? new RandomAccessFile(archive, "r") : null;
+             OutputStream out = Files.newOutputStream(tempPath)) {
+            Map<String, PreviousEntry> previousEntries = readPreviousEntries(previous);
+            ArchiveOutput output = new ArchiveOutput(out);
+
+            // entries are prepared ahead of writing, but not too far, so compressed data doesn't pile up in memory
+            Deque<ForkJoinTask<PreparedEntry>> pending = new ArrayDeque<>();
+            int window = parallelism * 4;
+            for (Map.Entry<String, File> entry : entries.entrySet()) {
+                String name = entry.getKey();
+                File file = entry.getValue();
+                pending.add(pool.submit(() -> prepare(name, file, previousEntries.get(name))));
+                if (pending.size() >= window) {
+                    output.write(pending.remove().join(), previous);
+                }
+            }
+            while (!pending.isEmpty()) {
+                output.write(pending.remove().join(), previous);
+            }
+            output.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+        Files.move(tempPath, archivePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static PreparedEntry prepare(String name, File file, PreviousEntry previous) {
+        try {
+            if (isStored(name)) {
+                long[] crcAndSize = crcAndSize(file);
+                if (crcAndSize[1] > MAX_SIZE) throw new IllegalArgumentException(file + " is too large for a zip archive");
+                return new PreparedEntry(name, file, STORED, crcAndSize[0], crcAndSize[1], crcAndSize[1], null,
+                        matches(previous, STORED, crcAndSize) ? previous : null);
+            }
+
+            byte[] content = Files.readAllBytes(file.toPath());
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            long[] crcAndSize = {crc.getValue(), content.length};
+            if (matches(previous, DEFLATED, crcAndSize) || matches(previous, STORED, crcAndSize)) {
+                return new PreparedEntry(name, file, previous.method, crc.getValue(), content.length,
+                        previous.compressedSize, null, previous);
+            }
+
+            byte[] compressed = deflate(content);
+            if (compressed.length >= content.length) {
+                return new PreparedEntry(name, file, STORED, crc.getValue(), content.length, content.length, content, null);
+            }
+            return new PreparedEntry(name, file, DEFLATED, crc.getValue(), content.length, compressed.length, compressed, null);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + file, e);
+        }
+    }
+
+    private static boolean matches(PreviousEntry previous, int method, long[] crcAndSize) {
+        return previous != null && previous.method == method
+                && previous.crc == crcAndSize[0] && previous.size == crcAndSize[1];
+    }
+
+    private static boolean isStored(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > name.lastIndexOf('/') && STORED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase());
+    }
+
+    private static long[] crcAndSize(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] buffer = new byte[65536];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, read);
+                size += read;
+            }
+        }
+        return new long[]{crc.getValue(), size};
+    }
+
+    private static byte[] deflate(byte[] content) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 64);
+            byte[] buffer = new byte[65536];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads the central directory of an archive. Archives that can't be read are treated as empty ones,
+     * as they are only used to avoid compressing the same data again.
+     */
+    private static Map<String, PreviousEntry> readPreviousEntries(RandomAccessFile archive) throws IOException {
+        if (archive == null || archive.length() < END_SIZE) return Collections.emptyMap();
+
+        int tailSize = (int) Math.min(archive.length(), END_SIZE + 0xFFFF);
+        byte[] tail = new byte[tailSize];
+        archive.seek(archive.length() - tailSize);
+        archive.readFully(tail);
+        int end = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (readInt(tail, i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) return Collections.emptyMap();
+
+        int count = readShort(tail, end + 10);
+        long directorySize = readInt(tail, end + 12) & MAX_SIZE;
+        long directoryOffset = readInt(tail, end + 16) & MAX_SIZE;
+        if (directoryOffset + directorySize > archive.length()) return Collections.emptyMap();
+
+        byte[] directory = new byte[(int) directorySize];
+        archive.seek(directoryOffset);
+        archive.readFully(directory);
+        Map<String, PreviousEntry> entries = new HashMap<>();
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_HEADER_SIZE > directory.length
+                    || readInt(directory, position) != CENTRAL_HEADER_SIGNATURE) {
+                return Collections.emptyMap();
+            }
+            int method = readShort(directory, position + 10);
+            long crc = readInt(directory, position + 16) & MAX_SIZE;
+            long compressedSize = readInt(directory, position + 20) & MAX_SIZE;
+            long size = readInt(directory, position + 24) & MAX_SIZE;
+            int nameLength = readShort(directory, position + 28);
+            int extraLength = readShort(directory, position + 30);
+            int commentLength = readShort(directory, position + 32);
+            long localHeaderOffset = readInt(directory, position + 42) & MAX_SIZE;
+            String name = new String(directory, position + CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+            if (method == STORED || method == DEFLATED) {
+                entries.put(name, new PreviousEntry(method, crc, compressedSize, size, localHeaderOffset));
+            }
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return readShort(bytes, offset) | readShort(bytes, offset + 2) << 16;
+    }
+
+    private static class ArchiveOutput {
+        private final OutputStream out;
+        private final ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        private final byte[] buffer = new byte[65536];
+        private long offset = 0;
+        private int count = 0;
+
+        ArchiveOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(PreparedEntry entry, RandomAccessFile previous) throws IOException {
+            if (offset > MAX_SIZE) throw new IllegalStateException("Archive is too large for a zip archive");
+
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            int flags = name.length != entry.name.length() ? UTF8_FLAG : 0;
+            int version = entry.method == DEFLATED ? 20 : 10;
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream(LOCAL_HEADER_SIZE + name.length);
+            writeInt(header, LOCAL_HEADER_SIGNATURE);
+            writeShort(header, version);
+            writeEntryFields(header, entry, flags, name);
+            header.write(name);
+            header.writeTo(out);
+
+            writeInt(directory, CENTRAL_HEADER_SIGNATURE);
+            writeShort(directory, version);
+            writeShort(directory, version);
+            writeEntryFields(directory, entry, flags, name);
+            writeShort(directory, 0); // comment length
+            writeShort(directory, 0); // disk number
+            writeShort(directory, 0); // internal attributes
+            writeInt(directory, 0); // external attributes
+            writeInt(directory, (int) offset);
+            directory.write(name);
+
+            if (entry.data != null) {
+                out.write(entry.data);
+            } else if (entry.previous != null) {
+                copyPreviousData(entry, previous);
+            } else {
+                copyFile(entry);
+            }
+            offset += header.size() + entry.compressedSize;
+            ++count;
+        }
+
+        private void copyPreviousData(PreparedEntry entry, RandomAccessFile previous) throws IOException {
+            byte[] localHeader = new byte[LOCAL_HEADER_SIZE];
+            previous.seek(entry.previous.localHeaderOffset);
+            previous.readFully(localHeader);
+            if (readInt(localHeader, 0) != LOCAL_HEADER_SIGNATURE) {
+                throw new IOException("Previous archive is corrupted at entry " + entry.name);
+            }
+            previous.seek(entry.previous.localHeaderOffset + LOCAL_HEADER_SIZE
+                    + readShort(localHeader, 26) + readShort(localHeader, 28));
+            long remaining = entry.compressedSize;
+            while (remaining > 0) {
+                int read = previous.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) throw new IOException("Previous archive is truncated at entry " + entry.name);
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+
+        private void copyFile(PreparedEntry entry) throws IOException {
+            long copied = 0;
+            try (InputStream in = Files.newInputStream(entry.file.toPath())) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                    copied += read;
+                }
+            }
+            if (copied != entry.size) throw new IllegalStateException(entry.file + " was modified while packaging");
+        }
+
+        void finish() throws IOException {
+            if (offset + directory.size() > MAX_SIZE) throw new IllegalStateException("Archive is too large for a zip archive");
+
+            directory.writeTo(out);
+            ByteArrayOutputStream end = new ByteArrayOutputStream(END_SIZE);
+            writeInt(end, END_SIGNATURE);
+            writeShort(end, 0); // disk number
+            writeShort(end, 0); // disk with the central directory
+            writeShort(end, count);
+            writeShort(end, count);
+            writeInt(end, directory.size());
+            writeInt(end, (int) offset);
+            writeShort(end, 0); // comment length
+            end.writeTo(out);
+        }
+
+        // fields shared by local and central headers, starting with flags and ending with extra length
+        private static void writeEntryFields(ByteArrayOutputStream out, PreparedEntry entry, int flags, byte[] name) {
+            writeShort(out, flags);
+            writeShort(out, entry.method);
+            writeShort(out, DOS_TIME);
+            writeShort(out, DOS_DATE);
+            writeInt(out, (int) entry.crc);
+            writeInt(out, (int) entry.compressedSize);
+            writeInt(out, (int) entry.size);
+            writeShort(out, name.length);
+            writeShort(out, 0); // extra length
+        }
+
+        private static void writeShort(ByteArrayOutputStream out, int value) {
+            out.write(value);
+            out.write(value >>> 8);
+        }
+
+        private static void writeInt(ByteArrayOutputStream out, int value) {
+            writeShort(out, value);
+            writeShort(out, value >>> 16);
+        }
+    }
+
+    private static class PreparedEntry {
+        final String name;
+        final File file;
+        final int method;
+        final long crc;
+        final long size;
+        final long compressedSize;
+        final byte[] data; // null when the data is copied from the file or the previous archive
+        final PreviousEntry previous;
+
+        PreparedEntry(String name, File file, int method, long crc, long size, long compressedSize,
+                      byte[] data, PreviousEntry previous) {
+            this.name = name;
+            this.file = file;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.data = data;
+            this.previous = previous;
+        }
+    }
+
+    private static class PreviousEntry {
+        final int method;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final long localHeaderOffset;
+
+        PreviousEntry(int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.tarcv.ztest.plugin
+
+import javax.inject.Inject
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+import static java.lang.System.lineSeparator
+import static java.util.concurrent.TimeUnit.SECONDS
+
+/**
+ * Compiles a single ACS file in a worker of {@link CompileAcsTask}.
+ * <p>
+ * ACC writes its errors to acs.err next to the compiled file, so the file is compiled from a copy
+ * in its own working directory. Includes are still resolved from the directory of the original file.
+ */
+class AccCompileAction implements Runnable {
+    private final File accBin
+    private final File sourceFile
+    private final File destinationFile
+    private final File workDir
+    private final int timeoutSeconds
+
+    @Inject
+    AccCompileAction(File accBin, File sourceFile, File destinationFile, File workDir, Integer timeoutSeconds) {
+        this.accBin = accBin
+        this.sourceFile = sourceFile
+        this.destinationFile = destinationFile
+        this.workDir = workDir
+        this.timeoutSeconds = timeoutSeconds
+    }
+
+    @Override
+    void run() {
+        workDir.deleteDir()
+        if (!workDir.mkdirs()) {
+            throw new RuntimeException("Failed to create $workDir")
+        }
+        File sourceCopy = new File(workDir, sourceFile.name)
+        Files.copy(sourceFile.toPath(), sourceCopy.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        File logFile = new File(workDir, "acc.log")
+
+        List<String> arguments = new ArrayList<>()
+        arguments.add(accBin.path)
+        arguments.add("-i")
+        arguments.add(sourceFile.parentFile.path)
+        arguments.add(sourceCopy.path)
+        arguments.add(destinationFile.path)
+        Process accProcess = new ProcessBuilder()
+                .directory(workDir)
+                .command(arguments)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile)
+                .start()
+
+        boolean finished = accProcess.waitFor(timeoutSeconds, SECONDS)
+        if (!finished) {
+            accProcess.destroyForcibly()
+            throw new RuntimeException("Compilation of $sourceFile hasn't finished in ${timeoutSeconds}s, killing")
+        }
+        def exitValue = accProcess.exitValue()
+        if (exitValue != 0) {
+            destinationFile.delete()
+            File errorFile = new File(workDir, "acs.err")
+            String msg = readText(errorFile.file ? errorFile : logFile)
+                    .replace(sourceCopy.path, sourceFile.path)
+            if (msg.isEmpty()) {
+                throw new RuntimeException("ACC returned $exitValue for $sourceFile")
+            }
+            throw new RuntimeException("Compilation error in $sourceFile:${lineSeparator()}$msg")
+        }
+        workDir.deleteDir()
+    }
+
+    private static String readText(File file) {
+        if (!file.file) return ""
+        return String.join(lineSeparator(), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)).trim()
+    }
+}
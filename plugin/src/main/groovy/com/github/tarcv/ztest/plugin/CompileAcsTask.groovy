@@ -1,22 +1,36 @@
 package com.github.tarcv.ztest.plugin
 
 
-import org.gradle.api.file.FileVisitDetails
-import org.gradle.api.file.FileVisitor
 import org.gradle.api.provider.Property
 import org.gradle.api.provider.Provider
+import org.gradle.api.tasks.Internal
 import org.gradle.api.tasks.OutputDirectory
 import org.gradle.api.tasks.SourceTask
 import org.gradle.api.tasks.TaskAction
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs
+import org.gradle.api.tasks.incremental.InputFileDetails
+import org.gradle.workers.IsolationMode
+import org.gradle.workers.WorkerConfiguration
+import org.gradle.workers.WorkerExecutor
 
+import javax.inject.Inject
 import java.nio.charset.StandardCharsets
-import java.nio.file.Files
-
-import static java.lang.System.lineSeparator
-import static java.util.concurrent.TimeUnit.SECONDS
+import java.util.regex.Matcher
+import java.util.regex.Pattern
 
+/**
+ * Compiles ACS files with ACC found in ACC_HOME.
+ * <p>
+ * Each file is compiled by a separate ACC process run by a Gradle worker, so the number of concurrent
+ * processes is bounded by --max-workers. On incremental builds only changed files and files including them
+ * are compiled again.
+ */
 class CompileAcsTask extends SourceTask {
+    private static final Pattern INCLUDE = Pattern.compile('^\\s*#(?:include|import)\\s+"([^"]+)"',
+            Pattern.CASE_INSENSITIVE | Pattern.MULTILINE)
+
     private final Property<File> destinationDir = getProject().getObjects().property(File.class)
+    private int timeoutSeconds = 15
 
     @OutputDirectory
     File getDestinationDir() {
@@ -31,77 +45,122 @@ class CompileAcsTask extends SourceTask {
         this.destinationDir.set(destinationDir)
     }
 
+    /**
+     * Time after which a single ACC process is killed
+     */
+    @Internal
+    int getTimeoutSeconds() {
+        return timeoutSeconds
+    }
+
+    void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds
+    }
+
+    @Inject
+    protected WorkerExecutor getWorkerExecutor() {
+        throw new UnsupportedOperationException()
+    }
+
     @TaskAction
-    protected void compile() {
-        getSource().visit(new FileVisitor() {
-            @Override
-            void visitDir(FileVisitDetails dirDetails) {
+    protected void compile(IncrementalTaskInputs inputs) {
+        List<File> acsFiles = getSource().files.findAll { isAcs(it) }.sort()
+        Map<String, File> outputs = new HashMap<>()
+        for (File file : acsFiles) {
+            File otherFile = outputs.put(outputFile(file).name, file)
+            if (otherFile != null) {
+                throw new RuntimeException("Both $otherFile and $file would be compiled to ${outputFile(file).name}")
             }
+        }
 
-            @Override
-            void visitFile(FileVisitDetails fileDetails) {
-                File file = fileDetails.file
-                String lumpName = file.getName().toUpperCase()
-                if (lumpName.endsWith(".ACS")) {
-                    buildAcs(file)
+        Collection<File> filesToCompile
+        if (inputs.incremental) {
+            Set<File> changedFiles = new HashSet<>()
+            inputs.outOfDate { InputFileDetails change ->
+                changedFiles.add(normalize(change.file))
+            }
+            inputs.removed { InputFileDetails change ->
+                changedFiles.add(normalize(change.file))
+                if (isAcs(change.file) && !outputs.containsKey(outputFile(change.file).name)) {
+                    outputFile(change.file).delete()
                 }
             }
+            filesToCompile = findAffectedFiles(acsFiles, changedFiles)
+        } else {
+            getDestinationDir().listFiles()?.findAll { it.name.endsWith(".o") }?.each { it.delete() }
+            filesToCompile = acsFiles
+        }
+        if (filesToCompile.isEmpty()) {
+            return
+        }
 
-            void buildAcs(File file) {
-                String accBaseDir = System.getenv("ACC_HOME")
-                if (accBaseDir == null || accBaseDir.isEmpty()) {
-                    throw new RuntimeException("ACC_HOME env variable should contain path to ACC")
-                }
-                File accBin = new File(accBaseDir, "acc.exe")
-                if (!accBin.exists()) {
-                    accBin = new File(accBaseDir, "acc")
-                }
-                if (!accBin.exists()) {
-                    throw new RuntimeException("acc not found in the directory specified by ACC_HOME")
-                }
-                File destinationFile = new File(getDestinationDir(),
-                        file.name.toUpperCase().replaceAll("\\.ACS\$", ".o"));
-
-                List<String> arguments = new ArrayList<>()
-                arguments.add(accBin.path)
-
-/*
-                FileCollection classpath = getClasspath()
-                if (classpath != null) {
-                    File includeDir = classpath.singleFile
-                    if (!includeDir.isDirectory()) {
-                        throw new RuntimeException("Path $includeDir specified as a classpath should be a directory")
-                    }
-                    arguments.add("-i")
-                    arguments.add(includeDir.path)
-                }
-*/
-
-                arguments.add(file.path)
-                arguments.add(destinationFile.path)
-                Process accProcess = new ProcessBuilder()
-                    .directory(getDestinationDir())
-                    .command(arguments)
-                    .inheritIO()
-                    .start()
-
-                boolean finished = accProcess.waitFor(15, SECONDS)
-                if (!finished) {
-                    accProcess.destroyForcibly()
-                    throw new RuntimeException("Compilation process hasn't finished in 15s, killing")
-                }
-                def exitValue = accProcess.exitValue()
-                if (exitValue != 0) {
-                    File errorFile = new File(file.parentFile, "acs.err")
-                    if (errorFile.exists() && errorFile.file) {
-                        String msg = String.join(lineSeparator(), Files.readAllLines(errorFile.toPath(), StandardCharsets.UTF_8))
-                        errorFile.delete()
-                        throw new RuntimeException("Compilation error:${lineSeparator()}$msg")
-                    } else {
-                        throw new RuntimeException("ACC returned $exitValue")
-                    }
-                }
+        File accBin = findAcc()
+        for (File file : filesToCompile) {
+            File destinationFile = outputFile(file)
+            File workDir = new File(getTemporaryDir(), destinationFile.name)
+            getWorkerExecutor().submit(AccCompileAction.class) { WorkerConfiguration config ->
+                config.isolationMode = IsolationMode.NONE
+                config.displayName = "Compiling ${file.name}"
+                config.params(accBin, file, destinationFile, workDir, timeoutSeconds)
             }
-        })
+        }
+        getWorkerExecutor().await()
+    }
+
+    /**
+     * @return files that are changed or include a changed file, directly or through other includes
+     */
+    private static List<File> findAffectedFiles(List<File> acsFiles, Set<File> changedFiles) {
+        Map<File, Set<File>> includesCache = new HashMap<>()
+        return acsFiles.findAll { File file ->
+            Set<File> visited = new HashSet<>()
+            Deque<File> pending = new ArrayDeque<>()
+            pending.add(normalize(file))
+            while (!pending.isEmpty()) {
+                File current = pending.remove()
+                if (!visited.add(current)) continue
+                if (changedFiles.contains(current)) return true
+                pending.addAll(includesCache.computeIfAbsent(current) { readIncludes(it) })
+            }
+            return false
+        }
+    }
+
+    private static Set<File> readIncludes(File file) {
+        if (!file.file) return Collections.emptySet()
+
+        Set<File> includes = new HashSet<>()
+        Matcher matcher = INCLUDE.matcher(new String(file.bytes, StandardCharsets.ISO_8859_1))
+        while (matcher.find()) {
+            includes.add(normalize(new File(file.parentFile, matcher.group(1))))
+        }
+        return includes
+    }
+
+    private File outputFile(File file) {
+        return new File(getDestinationDir(), file.name.toUpperCase().replaceAll("\\.ACS\$", ".o"))
+    }
+
+    private static boolean isAcs(File file) {
+        return file.name.toUpperCase().endsWith(".ACS")
+    }
+
+    private static File normalize(File file) {
+        return file.toPath().toAbsolutePath().normalize().toFile()
+    }
+
+    private static File findAcc() {
+        String accBaseDir = System.getenv("ACC_HOME")
+        if (accBaseDir == null || accBaseDir.isEmpty()) {
+            throw new RuntimeException("ACC_HOME env variable should contain path to ACC")
+        }
+        File accBin = new File(accBaseDir, "acc.exe")
+        if (!accBin.exists()) {
+            accBin = new File(accBaseDir, "acc")
+        }
+        if (!accBin.exists()) {
+            throw new RuntimeException("acc not found in the directory specified by ACC_HOME")
+        }
+        return accBin
     }
 }
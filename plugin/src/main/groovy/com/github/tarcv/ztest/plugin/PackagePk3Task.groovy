@@ -0,0 +1,69 @@
+package com.github.tarcv.ztest.plugin
+
+import converter.Pk3Writer
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.FileCollection
+import org.gradle.api.file.FileTree
+import org.gradle.api.file.FileVisitDetails
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+
+/**
+ * Packages a mod into a PK3 archive, see {@link Pk3Writer} for how entries are stored.
+ */
+class PackagePk3Task extends DefaultTask {
+    private final List<FileTree> trees = new ArrayList<>()
+    private final List<String> prefixes = new ArrayList<>()
+    private File archiveFile
+
+    /**
+     * Adds files to the archive, directories are added with their content
+     * @param prefix directory inside the archive to put the files into, empty for the root
+     */
+    void from(Object source, String prefix = "") {
+        trees.add(getProject().files(source).asFileTree)
+        prefixes.add(prefix)
+    }
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    FileCollection getSource() {
+        return getProject().files(trees)
+    }
+
+    @Input
+    List<String> getPrefixes() {
+        return prefixes
+    }
+
+    @OutputFile
+    File getArchiveFile() {
+        return archiveFile
+    }
+
+    void setArchiveFile(File archiveFile) {
+        this.archiveFile = archiveFile
+    }
+
+    @TaskAction
+    protected void pack() {
+        SortedMap<String, File> entries = new TreeMap<>()
+        trees.eachWithIndex { FileTree tree, int i ->
+            String prefix = prefixes[i]
+            tree.visit { FileVisitDetails details ->
+                if (details.directory) return
+
+                String name = prefix.isEmpty() ? details.relativePath.pathString : "$prefix/${details.relativePath.pathString}"
+                File otherFile = entries.put(name, details.file)
+                if (otherFile != null) {
+                    throw new RuntimeException("Both $otherFile and ${details.file} would be packaged as $name")
+                }
+            }
+        }
+        Pk3Writer.write(entries, getArchiveFile())
+    }
+}
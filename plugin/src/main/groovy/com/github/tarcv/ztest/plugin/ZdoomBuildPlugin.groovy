@@ -3,7 +3,6 @@ package com.github.tarcv.ztest.plugin
 
 import org.gradle.api.Plugin
 import org.gradle.api.Project
-import org.gradle.api.Task
 import org.gradle.api.file.FileTreeElement
 import org.gradle.api.file.SourceDirectorySet
 import org.gradle.api.internal.classpath.ModuleRegistry
@@ -16,7 +15,6 @@ import org.gradle.api.plugins.JavaPluginConvention
 import org.gradle.api.specs.Spec
 import org.gradle.api.tasks.SourceSet
 import org.gradle.api.tasks.SourceSetContainer
-import org.gradle.api.tasks.bundling.Zip
 import org.gradle.internal.Cast
 
 import javax.inject.Inject
@@ -56,17 +54,12 @@ class ZdoomBuildPlugin implements Plugin<Project> {
     }
 
     private void setupPackageTask(Project project, CompileAcsTask compileTask, zdoomSourceSet) {
-        Task packageTask = project.task(type: Zip, dependsOn: compileTask, "packagePk3") {
-            archiveName = "${project.name}.pk3"
-            destinationDir = new File("${project.buildDir}/dist")
-
-            from(zdoomSourceSet.zdoom) {
-            }
-
-            from(compileTask.destinationDir) {
-                into 'acs'
-            }
-        }
+        PackagePk3Task packageTask = project.getTasks().create("packagePk3", PackagePk3Task.class)
+        packageTask.dependsOn(compileTask)
+        packageTask.setDescription("Packages the ${zdoomSourceSet.getZdoom()} and compiled ACS into a PK3.")
+        packageTask.from(zdoomSourceSet.zdoom)
+        packageTask.from({ compileTask.destinationDir }, 'acs')
+        packageTask.setArchiveFile(new File("${project.buildDir}/dist/${project.name}.pk3"))
         packageTask.group = "build"
         project.getTasks().getByName("assemble").dependsOn(packageTask)
     }
@@ -0,0 +1,148 @@
+package com.github.tarcv.ztest.simulation;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes messages in batches on a separate thread, so simulations don't wait for output.
+ * When the writer can't keep up and the queue is full, new messages are dropped and counted instead.
+ */
+public class AsyncTraceSink implements TraceSink, Closeable {
+    static final int DEFAULT_CAPACITY = 65536;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final Object POISON = new Object();
+
+    private final PrintStream out;
+    private final TraceLevel minLevel;
+    private final Set<TraceCategory> categories;
+    private final BlockingQueue<Object> queue; // messages and flush requests
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean closed = false;
+
+    public AsyncTraceSink(PrintStream out, TraceLevel minLevel) {
+        this(out, DEFAULT_CAPACITY, minLevel, EnumSet.allOf(TraceCategory.class));
+    }
+
+    /**
+     * @param capacity maximum number of queued messages
+     */
+    public AsyncTraceSink(PrintStream out, int capacity, TraceLevel minLevel, Set<TraceCategory> categories) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity should be positive");
+        this.out = out;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.minLevel = minLevel;
+        this.categories = EnumSet.copyOf(categories);
+        this.writerThread = new Thread(this::writeBatches, "Trace writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public boolean isEnabled(TraceLevel level, TraceCategory category) {
+        return level.compareTo(minLevel) >= 0 && categories.contains(category);
+    }
+
+    @Override
+    public void trace(int source, TraceLevel level, TraceCategory category, String message) {
+        if (closed) return;
+        if (!queue.offer(source + ": " + message)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of messages dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void writeBatches() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                for (Object item : batch) {
+                    if (item == POISON) {
+                        out.flush();
+                        return;
+                    } else if (item instanceof CountDownLatch) {
+                        out.flush();
+                        ((CountDownLatch) item).countDown();
+                    } else {
+                        out.println(item);
+                    }
+                }
+                out.flush();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until all queued messages are written to the stream of this sink,
+     * then reports to the given stream how many messages were dropped, if any
+     */
+    @Override
+    public void dump(PrintStream out) {
+        try {
+            CountDownLatch flushed = requestFlush();
+            if (flushed != null) {
+                // the writer only stops early if it is interrupted
+                while (!flushed.await(100, TimeUnit.MILLISECONDS) && writerThread.isAlive()) {
+                    // keep waiting
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long dropped = droppedCount.get();
+        if (dropped > 0) {
+            out.printf("%d trace messages were dropped as the writer couldn't keep up%n", dropped);
+            out.flush();
+        }
+    }
+
+    /**
+     * @return latch counted down when messages queued so far are written, or null if the writer is stopped
+     */
+    @Nullable
+    private synchronized CountDownLatch requestFlush() throws InterruptedException {
+        // close() queues the poison under the same lock, so the writer reaches this latch before stopping
+        if (closed || !writerThread.isAlive()) return null;
+        CountDownLatch flushed = new CountDownLatch(1);
+        queue.put(flushed);
+        return flushed;
+    }
+
+    /**
+     * Writes all queued messages and stops the writer thread. Messages traced later are ignored.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        if (!writerThread.isAlive()) return;
+        try {
+            queue.put(POISON);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.tarcv.ztest.simulation;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Name to factory registry filled by the code generated from DECORATE.
+ * Names are case-insensitive like in ZDoom.
+ */
+public final class ClassFactories {
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    ClassFactories() {
+    }
+
+    public void register(String name, Class<?> type, Function<Simulation, ?> factory) {
+        Entry oldEntry = entries.put(keyOf(name), new Entry(type, factory));
+        if (oldEntry != null) {
+            throw new IllegalStateException(String.format("Class %s is defined more than once", name));
+        }
+    }
+
+    @Nullable
+    Entry find(String name) {
+        return entries.get(keyOf(name));
+    }
+
+    static ClassFactories load(String providerClassName) {
+        ClassFactories factories = new ClassFactories();
+        try {
+            Class<?> providerClass = Class.forName(providerClassName);
+            Provider provider = (Provider) providerClass.getConstructor().newInstance();
+            provider.registerAll(factories);
+        } catch (ClassNotFoundException e) {
+            // no DECORATE was converted, so every lookup falls back to reflection
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        return factories;
+    }
+
+    private static String keyOf(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public interface Provider {
+        void registerAll(ClassFactories factories);
+    }
+
+    static final class Entry {
+        final Class<?> type;
+        private final Function<Simulation, ?> factory;
+
+        Entry(Class<?> type, Function<Simulation, ?> factory) {
+            this.type = type;
+            this.factory = factory;
+        }
+
+        Object newInstance(Simulation simulation) {
+            return factory.apply(simulation);
+        }
+    }
+}
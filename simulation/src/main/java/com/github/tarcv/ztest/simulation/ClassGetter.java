@@ -1,10 +1,22 @@
 package com.github.tarcv.ztest.simulation;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ClassGetter {
+    private static final String GENERATED_FACTORIES = "zdoom.DecorateFactories";
+    private static final ClassFactories.Entry NOT_FOUND = new ClassFactories.Entry(Void.class, simulation -> {
+        throw new AssertionError();
+    });
+
+    // Classes on the classpath don't change, so lookups are shared by all simulations in the JVM
+    private static final ConcurrentMap<String, ClassFactories.Entry> reflectiveEntries = new ConcurrentHashMap<>();
+
     private final List<String> packages;
 
     ClassGetter() {
@@ -14,7 +26,19 @@ public class ClassGetter {
         );
     }
 
-    Class<?> forSimpleName(String name) throws ClassNotFoundException {
+    ClassFactories.Entry forSimpleName(String name) throws ClassNotFoundException {
+        ClassFactories.Entry entry = GeneratedFactoriesHolder.FACTORIES.find(name);
+        if (entry == null) {
+            // hand-written classes are not in the generated registry
+            entry = reflectiveEntries.computeIfAbsent(name, this::findByReflection);
+        }
+        if (entry == NOT_FOUND) {
+            throw new ClassNotFoundException(String.format("No classes found by simple name %s", name));
+        }
+        return entry;
+    }
+
+    private ClassFactories.Entry findByReflection(String name) {
         Object[] candidates = packages.stream()
                 .map(p -> {
                     try {
@@ -27,10 +51,39 @@ public class ClassGetter {
                 .filter(Objects::nonNull)
                 .toArray();
         if (candidates.length == 0) {
-            throw new ClassNotFoundException(String.format("No classes found by simple name %s", name));
+            return NOT_FOUND;
         } else if (candidates.length > 1) {
             throw new AssertionError("Too many classes found");
         }
-        return (Class<?>) candidates[0];
+        Class<?> aClass = (Class<?>) candidates[0];
+        Constructor<?> constructor;
+        try {
+            // resolved once per class, so spawns don't look it up and check its access again
+            constructor = aClass.getDeclaredConstructor(Simulation.class);
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            // the class can still be used for type checks, it only fails when instantiated
+            return new ClassFactories.Entry(aClass, simulation -> {
+                throw new IllegalArgumentException(e);
+            });
+        }
+        return new ClassFactories.Entry(aClass, simulation -> newInstance(constructor, simulation));
+    }
+
+    private static Object newInstance(Constructor<?> constructor, Simulation simulation) {
+        try {
+            return constructor.newInstance(simulation);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static class GeneratedFactoriesHolder {
+        static final ClassFactories FACTORIES = ClassFactories.load(GENERATED_FACTORIES);
     }
 }
@@ -0,0 +1,34 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.io.PrintStream;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Writes messages synchronously, the way simulations always traced
+ */
+public class ConsoleTraceSink implements TraceSink {
+    private final PrintStream out;
+    private final TraceLevel minLevel;
+    private final Set<TraceCategory> categories;
+
+    public ConsoleTraceSink(PrintStream out, TraceLevel minLevel) {
+        this(out, minLevel, EnumSet.allOf(TraceCategory.class));
+    }
+
+    public ConsoleTraceSink(PrintStream out, TraceLevel minLevel, Set<TraceCategory> categories) {
+        this.out = out;
+        this.minLevel = minLevel;
+        this.categories = EnumSet.copyOf(categories);
+    }
+
+    @Override
+    public boolean isEnabled(TraceLevel level, TraceCategory category) {
+        return level.compareTo(minLevel) >= 0 && categories.contains(category);
+    }
+
+    @Override
+    public void trace(int source, TraceLevel level, TraceCategory category, String message) {
+        out.println(source + ": " + message);
+    }
+}
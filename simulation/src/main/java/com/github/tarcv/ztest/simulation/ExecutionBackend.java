@@ -0,0 +1,74 @@
+package com.github.tarcv.ztest.simulation;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.SuspendableRunnable;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs scripts of a single {@link PerTickExecutor}. The executor makes sure only one script strand or
+ * submitted task runs at any moment, a backend only has to provide the means to suspend and resume strands.
+ */
+interface ExecutionBackend {
+    // executed by the executor thread while no strand runs
+    <V> Future<V> submit(Callable<V> callable);
+
+    ScriptStrand newStrand(String name, SuspendableRunnable body);
+
+    /**
+     * Whether strands started one after another run in the order they were started, so there is no need
+     * to wait for each of them to suspend before starting the next one
+     */
+    boolean startsStrandsInOrder();
+
+    @Nullable ScriptStrand currentStrand();
+
+    boolean isScriptThread();
+
+    ResumeLatch newLatch();
+
+    void close();
+
+    static Thread getExecutorThread(ExecutorService singleThreadExecutor) {
+        try {
+            return singleThreadExecutor.submit(Thread::currentThread).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TerminateScriptException(e);
+        }
+    }
+
+    abstract class ScriptStrand {
+        private volatile ThreadContext threadContext;
+
+        ThreadContext getThreadContext() {
+            return threadContext;
+        }
+
+        void setThreadContext(ThreadContext threadContext) {
+            this.threadContext = threadContext;
+        }
+
+        abstract void start();
+
+        abstract void join(long timeoutMillis) throws ExecutionException, InterruptedException, TimeoutException;
+
+        abstract void cancel();
+    }
+
+    interface ResumeLatch {
+        // executed by the strand being suspended
+        void await() throws SuspendExecution, InterruptedException;
+
+        void countDown();
+
+        long getCount();
+    }
+}
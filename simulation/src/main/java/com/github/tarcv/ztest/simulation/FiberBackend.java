@@ -0,0 +1,130 @@
+package com.github.tarcv.ztest.simulation;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberExecutorScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.SuspendableRunnable;
+import co.paralleluniverse.strands.concurrent.CountDownLatch;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Runs scripts as Quasar fibers on a single scheduler thread. Requires the Quasar agent or AOT instrumentation.
+ */
+class FiberBackend implements ExecutionBackend {
+    private final ExecutorService schedulerExecutor;
+    private final boolean ownsSchedulerExecutor;
+    private final FiberScheduler scheduler;
+    private final Thread schedulerThread;
+
+    /**
+     * @param schedulerExecutor single threaded executor running all fibers of this backend
+     * @param ownsSchedulerExecutor whether {@link #close()} should shut the scheduler executor down
+     */
+    FiberBackend(ExecutorService schedulerExecutor, boolean ownsSchedulerExecutor) {
+        this.schedulerExecutor = schedulerExecutor;
+        this.ownsSchedulerExecutor = ownsSchedulerExecutor;
+        this.scheduler = new FiberExecutorScheduler("Tick scheduler", schedulerExecutor);
+        this.schedulerThread = ExecutionBackend.getExecutorThread(schedulerExecutor);
+    }
+
+    @Override
+    public <V> Future<V> submit(Callable<V> callable) {
+        return schedulerExecutor.submit(callable);
+    }
+
+    @Override
+    public ScriptStrand newStrand(String name, SuspendableRunnable body) {
+        return new FiberStrand(name, body);
+    }
+
+    @Override
+    public boolean startsStrandsInOrder() {
+        // the only scheduler thread runs fibers in FIFO order
+        return true;
+    }
+
+    @Override
+    @Nullable
+    public ScriptStrand currentStrand() {
+        Fiber fiber = Fiber.currentFiber();
+        if (fiber instanceof TickFiber) {
+            return ((TickFiber) fiber).strand;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isScriptThread() {
+        return Thread.currentThread() == schedulerThread;
+    }
+
+    @Override
+    public ResumeLatch newLatch() {
+        CountDownLatch latch = new CountDownLatch(1);
+        return new ResumeLatch() {
+            @Override
+            public void await() throws SuspendExecution, InterruptedException {
+                latch.await();
+            }
+
+            @Override
+            public void countDown() {
+                latch.countDown();
+            }
+
+            @Override
+            public long getCount() {
+                return latch.getCount();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        // Delayed fibers are just left parked, they are not referenced by anything else
+        if (ownsSchedulerExecutor) {
+            schedulerExecutor.shutdownNow();
+        }
+    }
+
+    private class FiberStrand extends ScriptStrand {
+        private final TickFiber fiber;
+
+        private FiberStrand(String name, SuspendableRunnable body) {
+            this.fiber = new TickFiber(name, body, this);
+        }
+
+        @Override
+        void start() {
+            fiber.start();
+        }
+
+        @Override
+        void join(long timeoutMillis) throws ExecutionException, InterruptedException, TimeoutException {
+            fiber.join(timeoutMillis, MILLISECONDS);
+        }
+
+        @Override
+        void cancel() {
+            fiber.cancel(true);
+        }
+    }
+
+    private class TickFiber extends Fiber<Void> {
+        private final FiberStrand strand;
+
+        TickFiber(String name, SuspendableRunnable runnable, FiberStrand strand) {
+            super(name, scheduler, runnable);
+            this.strand = strand;
+        }
+    }
+}
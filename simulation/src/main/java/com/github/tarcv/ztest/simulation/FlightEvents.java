@@ -0,0 +1,227 @@
+package com.github.tarcv.ztest.simulation;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JDK Flight Recorder events of the simulation, which can be opened in JMC next to GC and thread events.
+ * <p>
+ * The events are defined through {@code jdk.jfr.EventFactory} looked up reflectively, so this class still
+ * compiles for Java 8 and does nothing on JDKs without JFR. Event types are only registered once a recording
+ * is started. Callers check {@link #isRecording()} before computing event fields, so without a recording
+ * an event costs a single volatile read.
+ */
+final class FlightEvents {
+    private static final Set<Object> runningRecordings = ConcurrentHashMap.newKeySet();
+    private static volatile boolean recording = false;
+
+    static {
+        try {
+            Class<?> recorderClass = Class.forName("jdk.jfr.FlightRecorder");
+            Class<?> listenerClass = Class.forName("jdk.jfr.FlightRecorderListener");
+            Object listener = Proxy.newProxyInstance(FlightEvents.class.getClassLoader(), new Class<?>[]{listenerClass},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "recordingStateChanged":
+                                onRecordingStateChanged(args[0]);
+                                return null;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            case "toString":
+                                return "FlightEvents listener";
+                            default:
+                                return null;
+                        }
+                    });
+            recorderClass.getMethod("addListener", listenerClass).invoke(null, listener);
+
+            // recordings started with -XX:StartFlightRecording are already running
+            if ((Boolean) recorderClass.getMethod("isInitialized").invoke(null)) {
+                Object recorder = recorderClass.getMethod("getFlightRecorder").invoke(null);
+                for (Object recording : (List<?>) recorderClass.getMethod("getRecordings").invoke(recorder)) {
+                    onRecordingStateChanged(recording);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // JFR is not available, events are never emitted
+        }
+    }
+
+    private FlightEvents() {
+    }
+
+    private static void onRecordingStateChanged(Object flightRecording) {
+        try {
+            Object state = flightRecording.getClass().getMethod("getState").invoke(flightRecording);
+            if ("RUNNING".equals(String.valueOf(state))) {
+                runningRecordings.add(flightRecording);
+            } else {
+                runningRecordings.remove(flightRecording);
+            }
+            recording = !runningRecordings.isEmpty();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * @return started tick event to be passed to {@link #tickEnded}, or null when nothing is recorded
+     */
+    @Nullable
+    static Object tickStarted() {
+        if (!recording) return null;
+        return Types.TICK.begin();
+    }
+
+    static void tickEnded(@Nullable Object event, int tick) {
+        if (event == null) return;
+        Types.TICK.commit(event, tick);
+    }
+
+    static void scriptStarted(String script, @Nullable Thing activator, int tick) {
+        Types.SCRIPT_START.commitInstant(script, describe(activator), tick);
+    }
+
+    static void scriptSuspended(String script, @Nullable Thing activator, int tick) {
+        Types.SCRIPT_SUSPEND.commitInstant(script, describe(activator), tick);
+    }
+
+    static void scriptResumed(String script, @Nullable Thing activator, int tick) {
+        Types.SCRIPT_RESUME.commitInstant(script, describe(activator), tick);
+    }
+
+    static void scriptFinished(String script, @Nullable Thing activator, int tick) {
+        Types.SCRIPT_FINISH.commitInstant(script, describe(activator), tick);
+    }
+
+    static void scriptAborted(String script, @Nullable Thing activator, int tick, String reason) {
+        Types.SCRIPT_ABORT.commitInstant(script, describe(activator), tick, reason);
+    }
+
+    private static String describe(@Nullable Thing activator) {
+        if (activator == null) return "world";
+        int tid = activator.getTid();
+        return tid != 0 ? activator.getClass().getSimpleName() + " tid " + tid : activator.getClass().getSimpleName();
+    }
+
+    // initialized on the first event, i.e. only when a recording is running
+    private static class Types {
+        static final EventType TICK = new EventType("ztest.Tick", "Simulation Tick", "Simulation",
+                field(int.class, "tick", "Tick"));
+        static final EventType SCRIPT_START = scriptEventType("ztest.ScriptStart", "Script Start");
+        static final EventType SCRIPT_SUSPEND = scriptEventType("ztest.ScriptSuspend", "Script Suspend");
+        static final EventType SCRIPT_RESUME = scriptEventType("ztest.ScriptResume", "Script Resume");
+        static final EventType SCRIPT_FINISH = scriptEventType("ztest.ScriptFinish", "Script Finish");
+        static final EventType SCRIPT_ABORT = scriptEventType("ztest.ScriptAbort", "Script Abort",
+                field(String.class, "reason", "Reason"));
+
+        private static EventType scriptEventType(String name, String label, Object... extraFields) {
+            List<Object> fields = new ArrayList<>(Arrays.asList(
+                    field(String.class, "script", "Script"),
+                    field(String.class, "activator", "Activator"),
+                    field(int.class, "tick", "Tick")));
+            fields.addAll(Arrays.asList(extraFields));
+            return new EventType(name, label, "Scripts", fields.toArray());
+        }
+
+        private static Object field(Class<?> type, String name, String label) {
+            try {
+                Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+                return descriptorClass.getConstructor(Class.class, String.class, List.class)
+                        .newInstance(type, name, Collections.singletonList(annotation("jdk.jfr.Label", label)));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static Object annotation(String annotationClassName, Object value) throws ReflectiveOperationException {
+            Constructor<?> constructor = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+            return constructor.newInstance(Class.forName(annotationClassName).asSubclass(Annotation.class), value);
+        }
+    }
+
+    private static class EventType {
+        private final Object factory;
+        private final Method newEvent;
+        private final Method set;
+        private final Method begin;
+        private final Method end;
+        private final Method shouldCommit;
+        private final Method commit;
+
+        EventType(String name, String label, String category, Object... fields) {
+            try {
+                List<Object> annotations = Arrays.asList(
+                        Types.annotation("jdk.jfr.Name", name),
+                        Types.annotation("jdk.jfr.Label", label),
+                        Types.annotation("jdk.jfr.Category", new String[]{"ZTest", category}),
+                        Types.annotation("jdk.jfr.StackTrace", false));
+                Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+                factory = factoryClass.getMethod("create", List.class, List.class)
+                        .invoke(null, annotations, Arrays.asList(fields));
+                newEvent = factoryClass.getMethod("newEvent");
+
+                Class<?> eventClass = Class.forName("jdk.jfr.Event");
+                set = eventClass.getMethod("set", int.class, Object.class);
+                begin = eventClass.getMethod("begin");
+                end = eventClass.getMethod("end");
+                shouldCommit = eventClass.getMethod("shouldCommit");
+                commit = eventClass.getMethod("commit");
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        Object begin() {
+            try {
+                Object event = newEvent.invoke(factory);
+                begin.invoke(event);
+                return event;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void commit(Object event, Object... values) {
+            try {
+                end.invoke(event);
+                commitWithValues(event, values);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // an event that has not been begun gets no duration
+        void commitInstant(Object... values) {
+            try {
+                commitWithValues(newEvent.invoke(factory), values);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void commitWithValues(Object event, Object[] values) throws ReflectiveOperationException {
+            if (!(Boolean) shouldCommit.invoke(event)) return;
+            for (int i = 0; i < values.length; i++) {
+                set.invoke(event, i, values[i]);
+            }
+            commit.invoke(event);
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package com.github.tarcv.ztest.simulation;
 
 class Hud {
-    static void print(String format, Object[] arguments) {
+    static void print(Simulation simulation, String format, Object[] arguments) {
         // TODO
-        System.out.printf(format, arguments);
-        System.out.println();
+        if (simulation.isTraced(TraceLevel.INFO, TraceCategory.HUD)) {
+            simulation.trace(TraceLevel.INFO, TraceCategory.HUD, String.format(format, arguments));
+        }
     }
 }
@@ -0,0 +1,276 @@
+package com.github.tarcv.ztest.simulation;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inputs given to a simulation from outside of scripts, in the order they were given.
+ * Together with the seed they are enough to bring a new simulation to the same state.
+ * <p>
+ * Inputs are only kept in memory when replay is enabled and only passed to the listener when there is one.
+ * Until the first tick inputs are kept anyway, so both can be requested after players are added and so on.
+ */
+class InputJournal {
+    private final List<Input> inputs = new ArrayList<>();
+    @Nullable private String unreplayableReason = null;
+    @Nullable private Listener listener = null;
+    private boolean keepInputs = false;
+    private int recordedTick = -1; // tick at which replaying the recorded inputs leaves a simulation
+
+    synchronized void record(Input input) {
+        if (keepInputs || recordedTick == -1) {
+            keep(input);
+        }
+        if (listener != null) {
+            listener.onInput(input);
+        }
+    }
+
+    private void keep(Input input) {
+        Input lastInput = inputs.isEmpty() ? null : inputs.get(inputs.size() - 1);
+        if (input instanceof RunTicks && lastInput instanceof RunTicks) {
+            // a loop of runAtLeastTicks calls shouldn't make the journal grow
+            long ticks = (long) ((RunTicks) lastInput).ticks + ((RunTicks) input).ticks;
+            if (ticks <= Integer.MAX_VALUE) {
+                inputs.set(inputs.size() - 1, new RunTicks((int) ticks));
+                return;
+            }
+        }
+        inputs.add(input);
+    }
+
+    /**
+     * Records that the simulation has run up to the tick, so inputs recorded next are replayed after it
+     */
+    synchronized void recordTicksUpTo(int tick) {
+        if (tick <= recordedTick) return;
+        if (recordedTick == -1 && !keepInputs) {
+            // nobody enabled replay before the first tick, so inputs won't be needed
+            inputs.clear();
+        }
+        // the first run also executes the tick of OPEN scripts, i.e. tick 0
+        int ticks = tick - Math.max(recordedTick, 0);
+        recordedTick = tick;
+        record(new RunTicks(ticks));
+    }
+
+    /**
+     * Keeps inputs in memory, so they can be taken by {@link #getInputs()}. Should be called before the first tick.
+     */
+    synchronized void keepInputs() {
+        if (recordedTick != -1) throw new IllegalStateException("Inputs can only be kept from the first tick");
+        keepInputs = true;
+    }
+
+    synchronized void markUnreplayable(String reason) {
+        if (unreplayableReason == null) {
+            unreplayableReason = reason;
+            if (listener != null) {
+                listener.onUnreplayable(reason);
+            }
+        }
+    }
+
+    /**
+     * Sets the listener and passes to it inputs recorded so far
+     */
+    synchronized void setListener(Listener listener) {
+        if (this.listener != null) throw new IllegalStateException("Inputs are already being listened to");
+        this.listener = listener;
+        inputs.forEach(listener::onInput);
+        if (unreplayableReason != null) {
+            listener.onUnreplayable(unreplayableReason);
+        }
+    }
+
+    synchronized List<Input> getInputs() {
+        if (!keepInputs) {
+            throw new IllegalStateException("Replay should be enabled before the first tick");
+        }
+        if (unreplayableReason != null) {
+            throw new IllegalStateException("Simulation can't be replayed: " + unreplayableReason);
+        }
+        return Collections.unmodifiableList(new ArrayList<>(inputs));
+    }
+
+    interface Listener {
+        void onInput(Input input);
+
+        void onUnreplayable(String reason);
+    }
+
+    interface Input {
+        // executed by the executor thread between ticks
+        void replay(Simulation<?> simulation);
+    }
+
+    static class RegisterCVar implements Input {
+        final String name;
+        final Simulation.CVarTypes type;
+
+        RegisterCVar(String name, Simulation.CVarTypes type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        @Override
+        public void replay(Simulation<?> simulation) {
+            simulation.registerCVar(name, type);
+        }
+    }
+
+    static class SetServerCVar implements Input {
+        final String name;
+        final Object value;
+
+        SetServerCVar(String name, Object value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public void replay(Simulation<?> simulation) {
+            simulation.setCVar(name, value);
+        }
+    }
+
+    static class SetMaxPlayers implements Input {
+        final int maxPlayers;
+
+        SetMaxPlayers(int maxPlayers) {
+            this.maxPlayers = maxPlayers;
+        }
+
+        @Override
+        public void replay(Simulation<?> simulation) {
+            simulation.setMaxPlayers(maxPlayers);
+        }
+    }
+
+    static class AddPlayer implements Input {
+        final String name;
+        final int health;
+        final int armor;
+        final boolean isBot;
+
+        AddPlayer(String name, int health, int armor, boolean isBot) {
+            this.name = name;
+            this.health = health;
+            this.armor = armor;
+            this.isBot = isBot;
+        }
+
+        @Override
+        public void replay(Simulation<?> simulation) {
+            simulation.addPlayer(name, health, armor, isBot);
+        }
+    }
+
+    static class JoinGame implements Input {
+        final int playerNumber;
+
+        JoinGame(int playerNumber) {
+            this.playerNumber = playerNumber;
+        }
+
+        @Override
+        public void replay(Simulation<?> simulation) {
+            simulation.getPlayer(playerNumber).joinGame();
+        }
+    }
+
+    static class SetUserCVar implements Input {
+        final int playerNumber;
+        final String name;
+        final Object value;
+
+        SetUserCVar(int playerNumber, String name, Object value) {
+            this.playerNumber = playerNumber;
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public void replay(Simulation<?> simulation) {
+            simulation.getPlayer(playerNumber).setCVar(name, value);
+        }
+    }
+
+    static class SetKey implements Input {
+        final int playerNumber;
+        final int key;
+        final boolean down;
+
+        SetKey(int playerNumber, int key, boolean down) {
+            this.playerNumber = playerNumber;
+            this.key = key;
+            this.down = down;
+        }
+
+        @Override
+        public void replay(Simulation<?> simulation) {
+            Player player = simulation.getPlayer(playerNumber);
+            if (down) {
+                player.downKey(key);
+            } else {
+                player.upKey(key);
+            }
+        }
+    }
+
+    static class Frag implements Input {
+        final int playerNumber;
+        final int victimNumber;
+
+        Frag(int playerNumber, int victimNumber) {
+            this.playerNumber = playerNumber;
+            this.victimNumber = victimNumber;
+        }
+
+        @Override
+        public void replay(Simulation<?> simulation) {
+            simulation.getPlayer(playerNumber).fragOther(simulation.getPlayer(victimNumber));
+        }
+    }
+
+    static class PukeScript implements Input {
+        static final int NO_ACTIVATOR = -1;
+
+        final int scriptsIndex;
+        final int activatorOrdinal; // order in which the activator was created
+        final String name;
+        final Object[] args;
+
+        PukeScript(int scriptsIndex, int activatorOrdinal, String name, Object[] args) {
+            this.scriptsIndex = scriptsIndex;
+            this.activatorOrdinal = activatorOrdinal;
+            this.name = name;
+            this.args = args.clone();
+        }
+
+        @Override
+        public void replay(Simulation<?> simulation) {
+            simulation.pukeScript(scriptsIndex, activatorOrdinal, name, args.clone());
+        }
+    }
+
+    static class RunTicks implements Input {
+        final int ticks; // 0 when only OPEN scripts were executed
+
+        RunTicks(int ticks) {
+            this.ticks = ticks;
+        }
+
+        @Override
+        public void replay(Simulation<?> simulation) {
+            if (ticks == 0) {
+                simulation.runOpenScripts();
+            } else {
+                simulation.runAtLeastTicks(ticks, runnables -> true);
+            }
+        }
+    }
+}
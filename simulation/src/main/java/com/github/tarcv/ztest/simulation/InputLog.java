@@ -0,0 +1,329 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary log of simulation inputs, from which a failed run can be re-executed without the test code.
+ * <p>
+ * A log consists of a header with the seed and the backend followed by records appended as inputs are given.
+ * Order in which scripts were started is recorded too, so replaying can detect when it diverges.
+ */
+public final class InputLog {
+    private static final int MAGIC = 0x5A544C47; // ZTLG
+    private static final int VERSION = 1;
+
+    private static final byte REGISTER_CVAR = 1;
+    private static final byte SET_SERVER_CVAR = 2;
+    private static final byte ADD_PLAYER = 3;
+    private static final byte JOIN_GAME = 4;
+    private static final byte SET_USER_CVAR = 5;
+    private static final byte SET_KEY = 6;
+    private static final byte FRAG = 7;
+    private static final byte PUKE_SCRIPT = 8;
+    private static final byte RUN_TICKS = 9;
+    private static final byte SCRIPT_STARTED = 10;
+    private static final byte UNREPLAYABLE = 11;
+    private static final byte SET_MAX_PLAYERS = 12;
+
+    private static final byte VALUE_INT = 1;
+    private static final byte VALUE_STRING = 2;
+    private static final byte VALUE_BOOLEAN = 3;
+    private static final byte VALUE_DOUBLE = 4;
+
+    private InputLog() {
+    }
+
+    /**
+     * Replays a log into a new simulation and returns it, so its state can be inspected. The caller should close it.
+     * @param stopAtTick tick at which replaying stops, or {@code Integer.MAX_VALUE} to replay the whole log
+     */
+    public static <T extends ScriptContext> Simulation<T> replay(
+            Path file, Consumer<Simulation<T>> scriptsInstaller, int stopAtTick) throws IOException {
+        Reader reader = new Reader(file);
+
+        Simulation<T> simulation = new Simulation<>(reader.seed, reader.backend);
+        try {
+            simulation.setFastForwardIdleTicks(true);
+            scriptsInstaller.accept(simulation);
+            simulation.setScriptStartListener((name, tick) -> {
+                ScriptStart expected = reader.scriptStarts.poll();
+                if (expected == null || expected.tick != tick || !expected.name.equals(name)) {
+                    throw new IllegalStateException(String.format(
+                            "Replay diverged at tick %d: started %s, but the log has %s", tick, name, expected));
+                }
+            });
+
+            for (InputJournal.Input input : reader.inputs) {
+                if (input instanceof InputJournal.RunTicks) {
+                    int ticksLeft = stopAtTick - Math.max(simulation.getCurrentTick(), 0);
+                    int ticks = ((InputJournal.RunTicks) input).ticks;
+                    if (ticksLeft < ticks) {
+                        if (ticksLeft > 0) {
+                            simulation.runAtLeastTicks(ticksLeft, runnables -> true);
+                        }
+                        break;
+                    }
+                }
+                input.replay(simulation);
+            }
+            return simulation;
+        } catch (RuntimeException | Error e) {
+            simulation.close();
+            throw e;
+        }
+    }
+
+    static class Writer implements InputJournal.Listener, Closeable {
+        private final DataOutputStream out;
+
+        Writer(Path file, long seed, SimulationBackend backend) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            out.writeUTF(backend.name());
+        }
+
+        @Override
+        public synchronized void onInput(InputJournal.Input input) {
+            try {
+                writeInput(input);
+                if (input instanceof InputJournal.RunTicks) {
+                    // the test may fail before the simulation is closed
+                    out.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public synchronized void onUnreplayable(String reason) {
+            try {
+                out.writeByte(UNREPLAYABLE);
+                out.writeUTF(reason);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        synchronized void onScriptStarted(String name, int tick) {
+            try {
+                out.writeByte(SCRIPT_STARTED);
+                out.writeInt(tick);
+                out.writeUTF(name);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeInput(InputJournal.Input input) throws IOException {
+            if (input instanceof InputJournal.RegisterCVar) {
+                InputJournal.RegisterCVar registerCVar = (InputJournal.RegisterCVar) input;
+                out.writeByte(REGISTER_CVAR);
+                out.writeUTF(registerCVar.name);
+                out.writeByte(registerCVar.type.ordinal());
+            } else if (input instanceof InputJournal.SetServerCVar) {
+                InputJournal.SetServerCVar setCVar = (InputJournal.SetServerCVar) input;
+                out.writeByte(SET_SERVER_CVAR);
+                out.writeUTF(setCVar.name);
+                writeValue(setCVar.value);
+            } else if (input instanceof InputJournal.SetMaxPlayers) {
+                out.writeByte(SET_MAX_PLAYERS);
+                out.writeInt(((InputJournal.SetMaxPlayers) input).maxPlayers);
+            } else if (input instanceof InputJournal.AddPlayer) {
+                InputJournal.AddPlayer addPlayer = (InputJournal.AddPlayer) input;
+                out.writeByte(ADD_PLAYER);
+                out.writeUTF(addPlayer.name);
+                out.writeInt(addPlayer.health);
+                out.writeInt(addPlayer.armor);
+                out.writeBoolean(addPlayer.isBot);
+            } else if (input instanceof InputJournal.JoinGame) {
+                out.writeByte(JOIN_GAME);
+                out.writeInt(((InputJournal.JoinGame) input).playerNumber);
+            } else if (input instanceof InputJournal.SetUserCVar) {
+                InputJournal.SetUserCVar setCVar = (InputJournal.SetUserCVar) input;
+                out.writeByte(SET_USER_CVAR);
+                out.writeInt(setCVar.playerNumber);
+                out.writeUTF(setCVar.name);
+                writeValue(setCVar.value);
+            } else if (input instanceof InputJournal.SetKey) {
+                InputJournal.SetKey setKey = (InputJournal.SetKey) input;
+                out.writeByte(SET_KEY);
+                out.writeInt(setKey.playerNumber);
+                out.writeInt(setKey.key);
+                out.writeBoolean(setKey.down);
+            } else if (input instanceof InputJournal.Frag) {
+                InputJournal.Frag frag = (InputJournal.Frag) input;
+                out.writeByte(FRAG);
+                out.writeInt(frag.playerNumber);
+                out.writeInt(frag.victimNumber);
+            } else if (input instanceof InputJournal.PukeScript) {
+                InputJournal.PukeScript puke = (InputJournal.PukeScript) input;
+                out.writeByte(PUKE_SCRIPT);
+                out.writeByte(puke.scriptsIndex);
+                out.writeInt(puke.activatorOrdinal);
+                out.writeUTF(puke.name);
+                out.writeByte(puke.args.length);
+                for (Object arg : puke.args) {
+                    writeValue(arg);
+                }
+            } else if (input instanceof InputJournal.RunTicks) {
+                out.writeByte(RUN_TICKS);
+                out.writeInt(((InputJournal.RunTicks) input).ticks);
+            } else {
+                throw new IllegalArgumentException("Unsupported input " + input.getClass().getSimpleName());
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value instanceof Integer) {
+                out.writeByte(VALUE_INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof String) {
+                out.writeByte(VALUE_STRING);
+                out.writeUTF((String) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(VALUE_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Double) {
+                out.writeByte(VALUE_DOUBLE);
+                out.writeDouble((Double) value);
+            } else {
+                throw new IllegalArgumentException("Value can't be recorded: " + value);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static class Reader {
+        private final long seed;
+        private final SimulationBackend backend;
+        private final List<InputJournal.Input> inputs = new ArrayList<>();
+        private final Queue<ScriptStart> scriptStarts = new ArrayDeque<>();
+
+        private Reader(Path file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                    throw new IOException(file + " is not a supported input log");
+                }
+                seed = in.readLong();
+                backend = SimulationBackend.valueOf(in.readUTF());
+
+                try {
+                    //noinspection InfiniteLoopStatement
+                    while (true) {
+                        readRecord(in);
+                    }
+                } catch (EOFException e) {
+                    // end of the log, the last record can be incomplete if the recording JVM crashed
+                }
+            }
+        }
+
+        private void readRecord(DataInputStream in) throws IOException {
+            byte kind = in.readByte();
+            switch (kind) {
+                case REGISTER_CVAR:
+                    inputs.add(new InputJournal.RegisterCVar(in.readUTF(), Simulation.CVarTypes.values()[in.readByte()]));
+                    break;
+                case SET_SERVER_CVAR:
+                    inputs.add(new InputJournal.SetServerCVar(in.readUTF(), readValue(in)));
+                    break;
+                case SET_MAX_PLAYERS:
+                    inputs.add(new InputJournal.SetMaxPlayers(in.readInt()));
+                    break;
+                case ADD_PLAYER:
+                    inputs.add(new InputJournal.AddPlayer(in.readUTF(), in.readInt(), in.readInt(), in.readBoolean()));
+                    break;
+                case JOIN_GAME:
+                    inputs.add(new InputJournal.JoinGame(in.readInt()));
+                    break;
+                case SET_USER_CVAR:
+                    inputs.add(new InputJournal.SetUserCVar(in.readInt(), in.readUTF(), readValue(in)));
+                    break;
+                case SET_KEY:
+                    inputs.add(new InputJournal.SetKey(in.readInt(), in.readInt(), in.readBoolean()));
+                    break;
+                case FRAG:
+                    inputs.add(new InputJournal.Frag(in.readInt(), in.readInt()));
+                    break;
+                case PUKE_SCRIPT: {
+                    int scriptsIndex = in.readByte();
+                    int activatorOrdinal = in.readInt();
+                    String name = in.readUTF();
+                    Object[] args = new Object[in.readByte()];
+                    for (int i = 0; i < args.length; i++) {
+                        args[i] = readValue(in);
+                    }
+                    inputs.add(new InputJournal.PukeScript(scriptsIndex, activatorOrdinal, name, args));
+                    break;
+                }
+                case RUN_TICKS:
+                    inputs.add(new InputJournal.RunTicks(in.readInt()));
+                    break;
+                case SCRIPT_STARTED:
+                    scriptStarts.add(new ScriptStart(in.readInt(), in.readUTF()));
+                    break;
+                case UNREPLAYABLE: {
+                    String reason = in.readUTF();
+                    inputs.add(simulation -> {
+                        throw new IllegalStateException("Simulation can't be replayed further: " + reason);
+                    });
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown record kind " + kind);
+            }
+        }
+
+        private static Object readValue(DataInputStream in) throws IOException {
+            byte type = in.readByte();
+            switch (type) {
+                case VALUE_INT:
+                    return in.readInt();
+                case VALUE_STRING:
+                    return in.readUTF();
+                case VALUE_BOOLEAN:
+                    return in.readBoolean();
+                case VALUE_DOUBLE:
+                    return in.readDouble();
+                default:
+                    throw new IOException("Unknown value type " + type);
+            }
+        }
+    }
+
+    private static class ScriptStart {
+        final int tick;
+        final String name;
+
+        private ScriptStart(int tick, String name) {
+            this.tick = tick;
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s at tick %d", name, tick);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Inputs of players by tick, which are applied by the simulation at the start of ticks without a separate
+ * round-trip to the script thread for each input.
+ * <p>
+ * Ticks are counted from the tick at which the timeline is played, see {@link Simulation#playInputs}.
+ * Inputs at tick N are applied before scripts of the N-th tick run after that, same as if they were given
+ * right before that tick. Inputs of the same tick are applied in the order they were added.
+ * <p>
+ * Timelines can be loaded from text files with an input per line:
+ * <pre>
+ * # tick player input [arguments], the tick can be relative to the previous line
+ * 1 0 join
+ * +4 0 down BT_FORWARD
+ * 40 0 buttons 0
+ * 40 1 cvar playerclass 1
+ * 70 0 puke "Some script" 1 2.5 true
+ * </pre>
+ * Keys are numbers or names of {@link AcsConstants}.
+ */
+public final class InputTimeline {
+    private final TreeMap<Integer, List<Event>> events = new TreeMap<>();
+
+    public void joinGame(int tick, int playerNumber) {
+        add(tick, playerNumber, (simulation, player) -> player.joinGame());
+    }
+
+    public void downKey(int tick, int playerNumber, int key) {
+        add(tick, playerNumber, (simulation, player) -> player.downKey(key));
+    }
+
+    public void upKey(int tick, int playerNumber, int key) {
+        add(tick, playerNumber, (simulation, player) -> player.upKey(key));
+    }
+
+    /**
+     * Presses the given buttons and releases all others
+     */
+    public void setButtons(int tick, int playerNumber, int buttons) {
+        add(tick, playerNumber, (simulation, player) -> {
+            player.downKey(buttons);
+            player.upKey(~buttons);
+        });
+    }
+
+    public void setCVar(int tick, int playerNumber, String name, Object value) {
+        add(tick, playerNumber, (simulation, player) -> player.setCVar(name, value));
+    }
+
+    /**
+     * Runs a script of the first registered scripts class with the player as the activator
+     */
+    public void pukeScript(int tick, int playerNumber, String name, Object... args) {
+        Object[] argsCopy = args.clone();
+        add(tick, playerNumber, (simulation, player) -> simulation.pukeScript(player, name, argsCopy.clone()));
+    }
+
+    private void add(int tick, int playerNumber, PlayerInput input) {
+        if (tick < 1) throw new IllegalArgumentException("Tick should be positive");
+        events.computeIfAbsent(tick, t -> new ArrayList<>()).add(new Event(playerNumber, input));
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    public static InputTimeline load(Path file) throws IOException {
+        InputTimeline timeline = new InputTimeline();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        int tick = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            try {
+                List<String> tokens = tokenize(lines.get(i));
+                if (tokens.isEmpty()) continue;
+                if (tokens.size() < 3) throw new IllegalArgumentException("Expected tick, player and input");
+
+                String tickToken = tokens.get(0);
+                tick = tickToken.startsWith("+")
+                        ? tick + Integer.parseInt(tickToken.substring(1))
+                        : Integer.parseInt(tickToken);
+                int playerNumber = Integer.parseInt(tokens.get(1));
+                List<String> args = tokens.subList(3, tokens.size());
+                timeline.addParsed(tick, playerNumber, tokens.get(2), args);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(String.format("%s:%d: %s", file, i + 1, e.getMessage()), e);
+            }
+        }
+        return timeline;
+    }
+
+    private void addParsed(int tick, int playerNumber, String input, List<String> args) {
+        switch (input) {
+            case "join":
+                expectArgs(args, 0);
+                joinGame(tick, playerNumber);
+                break;
+            case "down":
+                expectArgs(args, 1);
+                downKey(tick, playerNumber, parseKey(args.get(0)));
+                break;
+            case "up":
+                expectArgs(args, 1);
+                upKey(tick, playerNumber, parseKey(args.get(0)));
+                break;
+            case "buttons":
+                expectArgs(args, 1);
+                setButtons(tick, playerNumber, parseKey(args.get(0)));
+                break;
+            case "cvar":
+                expectArgs(args, 2);
+                setCVar(tick, playerNumber, args.get(0), parseValue(args.get(1)));
+                break;
+            case "puke": {
+                if (args.isEmpty()) throw new IllegalArgumentException("Script name is missing");
+                Object[] scriptArgs = args.subList(1, args.size()).stream()
+                        .map(InputTimeline::parseValue)
+                        .toArray();
+                pukeScript(tick, playerNumber, unquote(args.get(0)), scriptArgs);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown input " + input);
+        }
+    }
+
+    private static void expectArgs(List<String> args, int count) {
+        if (args.size() != count) {
+            throw new IllegalArgumentException(String.format("Expected %d argument(s), got %d", count, args.size()));
+        }
+    }
+
+    private static int parseKey(String token) {
+        if (Character.isDigit(token.charAt(0))) {
+            return Integer.decode(token);
+        }
+        try {
+            return AcsConstants.class.getField(token).getInt(null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Unknown key " + token);
+        }
+    }
+
+    private static Object parseValue(String token) {
+        if (token.startsWith("\"")) return unquote(token);
+        if (token.equals("true") || token.equals("false")) return Boolean.parseBoolean(token);
+        if (token.contains(".")) return Double.parseDouble(token);
+        return Integer.decode(token);
+    }
+
+    private static String unquote(String token) {
+        if (!token.startsWith("\"")) return token;
+        return token.substring(1, token.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+    }
+
+    // splits a line by whitespace, keeping quoted strings whole and dropping the comment
+    private static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        int position = 0;
+        while (position < line.length()) {
+            char c = line.charAt(position);
+            if (Character.isWhitespace(c)) {
+                ++position;
+            } else if (c == '#') {
+                break;
+            } else if (c == '"') {
+                int start = position++;
+                while (position < line.length() && line.charAt(position) != '"') {
+                    if (line.charAt(position) == '\\') ++position;
+                    ++position;
+                }
+                if (position >= line.length()) throw new IllegalArgumentException("Unterminated string");
+                tokens.add(line.substring(start, ++position));
+            } else {
+                int start = position;
+                while (position < line.length() && !Character.isWhitespace(line.charAt(position))) {
+                    ++position;
+                }
+                tokens.add(line.substring(start, position));
+            }
+        }
+        return tokens;
+    }
+
+    Playback play(Simulation<?> simulation, int startTick) {
+        return new Playback(simulation, startTick);
+    }
+
+    private interface PlayerInput {
+        // executed by the script thread
+        void apply(Simulation<?> simulation, Player player);
+    }
+
+    private static class Event {
+        final int playerNumber;
+        final PlayerInput input;
+
+        Event(int playerNumber, PlayerInput input) {
+            this.playerNumber = playerNumber;
+            this.input = input;
+        }
+    }
+
+    /**
+     * Position in a timeline being played, should be accessed from the script thread only
+     */
+    class Playback implements PerTickExecutor.TickInputs {
+        private final Simulation<?> simulation;
+        private final int[] ticks;
+        private final List<List<Event>> tickEvents;
+        private int index = 0;
+
+        private Playback(Simulation<?> simulation, int startTick) {
+            this.simulation = simulation;
+            this.ticks = new int[events.size()];
+            this.tickEvents = new ArrayList<>(events.size());
+            int i = 0;
+            for (Map.Entry<Integer, List<Event>> entry : events.entrySet()) {
+                ticks[i++] = startTick + entry.getKey();
+                tickEvents.add(new ArrayList<>(entry.getValue()));
+            }
+        }
+
+        @Override
+        public void applyInputs(int tick) {
+            while (index < ticks.length && ticks[index] <= tick) {
+                // inputs are recorded as if they were given between ticks
+                simulation.recordTicksUpTo(tick - 1);
+                for (Event event : tickEvents.get(index)) {
+                    event.input.apply(simulation, simulation.getPlayerByIndex(event.playerNumber));
+                }
+                ++index;
+            }
+        }
+
+        @Override
+        public int nextInputTick() {
+            return index < ticks.length ? ticks[index] : Integer.MAX_VALUE;
+        }
+    }
+}
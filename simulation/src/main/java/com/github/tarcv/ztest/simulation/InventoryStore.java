@@ -0,0 +1,87 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Items owned by a thing, keyed by their class name. Items are counted by case-insensitive names like in ZDoom,
+ * but taken by exact ones. Items without pickup behaviour are stored as plain amounts, other items are kept as objects.
+ */
+class InventoryStore {
+    // Should be accessed within script context only
+    private final Map<String, Integer> amounts = new HashMap<>();
+    private final Map<String, List<CustomInventory>> items = new HashMap<>();
+
+    static boolean isStackable(Class<?> itemClass) {
+        return Inventory.class.isAssignableFrom(itemClass);
+    }
+
+    void addAmount(Class<?> itemClass, int amount) {
+        assert isStackable(itemClass);
+        if (amount <= 0) return;
+        amounts.merge(itemClass.getSimpleName(), amount, Integer::sum);
+    }
+
+    void addItem(CustomInventory item) {
+        items.computeIfAbsent(item.getClass().getSimpleName(), key -> new ArrayList<>()).add(item);
+    }
+
+    int count(String className) {
+        // DECORATE class names are case-insensitive, so only one spelling of a name can be stored
+        int count = 0;
+        Integer amount = amounts.get(className);
+        if (amount != null) {
+            count += amount;
+        } else {
+            for (Map.Entry<String, Integer> entry : amounts.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(className)) count += entry.getValue();
+            }
+        }
+        List<CustomInventory> keyItems = items.get(className);
+        if (keyItems != null) {
+            count += keyItems.size();
+        } else {
+            for (Map.Entry<String, List<CustomInventory>> entry : items.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(className)) count += entry.getValue().size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of removed item objects, amounts are not included
+     */
+    int remove(String className, int count) {
+        int left = count;
+
+        Integer amount = amounts.get(className);
+        if (amount != null) {
+            int removed = Math.min(amount, left);
+            left -= removed;
+            if (amount == removed) {
+                amounts.remove(className);
+            } else {
+                amounts.put(className, amount - removed);
+            }
+        }
+
+        int removedItems = 0;
+        List<CustomInventory> keyItems = items.get(className);
+        if (keyItems != null) {
+            Iterator<CustomInventory> iterator = keyItems.iterator();
+            while (left > 0 && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                --left;
+                ++removedItems;
+            }
+            if (keyItems.isEmpty()) {
+                items.remove(className);
+            }
+        }
+        return removedItems;
+    }
+}
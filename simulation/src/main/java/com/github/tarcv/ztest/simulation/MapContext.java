@@ -1,20 +1,17 @@
     package com.github.tarcv.ztest.simulation;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 public class MapContext<T extends ScriptContext> {
-    final List<String> executedScripts = Collections.synchronizedList(new ArrayList<>());
+    final ScriptThreadEnforcer<RunningScripts> runningScripts;
     final ScriptContext.ScriptContextCreator<T> ctor;
     final Simulation<T> simulation;
-    final List<ScriptContext.Script<T>> scripts; // TODO: make read-only
+    final ScriptTable<T> scripts;
 
-    MapContext(Simulation<T> simulation, ScriptContext.ScriptContextCreator<T> supplier, List<ScriptContext.Script<T>> scripts) {
+    MapContext(Simulation<T> simulation, ScriptContext.ScriptContextCreator<T> supplier, ScriptTable<T> scripts) {
         super();
         this.ctor = supplier;
         this.simulation = simulation;
-        this.scripts = Collections.unmodifiableList(new ArrayList<>(scripts));
+        this.scripts = scripts;
+        this.runningScripts = simulation.confineToScriptThread(new RunningScripts());
     }
 
 }
@@ -1,56 +1,95 @@
 package com.github.tarcv.ztest.simulation;
 
-import co.paralleluniverse.fibers.Fiber;
-import co.paralleluniverse.fibers.FiberExecutorScheduler;
-import co.paralleluniverse.fibers.FiberScheduler;
 import co.paralleluniverse.fibers.SuspendExecution;
-import co.paralleluniverse.strands.Strand.State;
 import co.paralleluniverse.strands.SuspendableRunnable;
-import co.paralleluniverse.strands.concurrent.CountDownLatch;
+import com.github.tarcv.ztest.simulation.ExecutionBackend.ResumeLatch;
+import com.github.tarcv.ztest.simulation.ExecutionBackend.ScriptStrand;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Supplier;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static com.github.tarcv.ztest.simulation.TraceCategory.SCRIPTS;
+import static com.github.tarcv.ztest.simulation.TraceLevel.DEBUG;
 
 class PerTickExecutor {
     private static final int JOIN_TIMEOUT_MILLIS = 1000 / 35 * 10;
+    private static final int NO_TARGET_TICK = -1;
     private final Random randomSource;
 
     private final Thread executorThread = Thread.currentThread();
-    private final FiberScheduler scheduler =
-            new FiberExecutorScheduler("Tick scheduler", Executors.newSingleThreadExecutor());
-    private final AtomicReference<Thread> fiberThread = new AtomicReference<>();
+    private final ExecutionBackend backend;
+    private final TickBarrier barrier = new TickBarrier();
 
+    // threads waiting for an arbitrary condition and the ones started during the current tick
     private final List<ThreadContextImpl> delayedTickThreads = Collections.synchronizedList(new ArrayList<>());
+    // threads waiting for a known tick, should be accessed by the executor thread only
+    private final TickWheel<ThreadContextImpl> tickWheel = new TickWheel<>();
+    // threads waiting to be woken by other scripts, should be accessed by the executor thread only
+    private final Set<ThreadContextImpl> parkedThreads = new HashSet<>();
+    // parked threads woken since they were checked last time, may contain threads that are not parked anymore
+    private final List<ThreadContextImpl> wokenThreads = Collections.synchronizedList(new ArrayList<>());
+    private long nextThreadSequence = 0;
+    private int executingTick = -1; // should be accessed by the executor thread only
+    @Nullable private volatile ObjIntConsumer<String> scriptStartListener = null;
+    @Nullable private volatile TickInputs tickInputs = null;
+    private volatile TraceSink traceSink = TraceSink.getDefault();
+    private final int traceSource = System.identityHashCode(this);
+    private final SimulationMetrics metrics = new SimulationMetrics();
     private final List<ScriptContext.NamedRunnable> scheduledRunnables = Collections.synchronizedList(new ArrayList<>());
 
     private final ScriptThreadEnforcer<PerTickExecutorData> data = new ScriptThreadEnforcer<PerTickExecutorData>(this, new PerTickExecutorData());
 
-    PerTickExecutor(Random randomSource) {
+    PerTickExecutor(Random randomSource, ExecutionBackend backend) {
         this.randomSource = randomSource;
+        this.backend = backend;
+    }
+
+    void close() {
+        backend.close();
     }
 
     ThreadContext getThreadContext() {
-        return ((TickThread)Fiber.currentFiber()).threadContext.get();
+        ScriptStrand strand = backend.currentStrand();
+        if (strand == null) throw new IllegalStateException("Should be called from a script only");
+        return strand.getThreadContext();
+    }
+
+    SimulationMetrics getMetrics() {
+        return metrics;
     }
 
     void assertIsFiberThread() {
-        Thread actualFiberThread = fiberThread.updateAndGet(thread -> {
-            if (thread == null) {
-                return Thread.currentThread();
-            }
-            return thread;
-        });
-        assert Thread.currentThread() == actualFiberThread;
+        assert backend.isScriptThread();
+    }
+
+    // the listener is called by the executor thread with script name and tick right before the script is started
+    void setScriptStartListener(@Nullable ObjIntConsumer<String> scriptStartListener) {
+        this.scriptStartListener = scriptStartListener;
+    }
+
+    @Nullable
+    TickInputs getTickInputs() {
+        return tickInputs;
+    }
+
+    void setTickInputs(@Nullable TickInputs tickInputs) {
+        this.tickInputs = tickInputs;
     }
 
     void scheduleRunnable(ScriptContext.NamedRunnable runnable) {
@@ -64,7 +103,7 @@ class PerTickExecutor {
     }
 
     void executeTickWithRunnables(List<ScriptContext.NamedRunnable> namedRunnable) throws TimeoutException {
-        assert getCurrentTick() == -1 && delayedTickThreads.isEmpty();
+        assert getCurrentTick() == -1 && delayedTickThreads.isEmpty() && tickWheel.isEmpty() && parkedThreads.isEmpty();
 
         ArrayList<ScriptContext.NamedRunnable> copy = new ArrayList<>(namedRunnable);
         executeRunnablesInternal(copy);
@@ -79,15 +118,38 @@ class PerTickExecutor {
 
     private void executeRunnablesInternal(List<ScriptContext.NamedRunnable> newRunnables) throws TimeoutException {
         assertIsExecutorThread();
+        long startNanos = System.nanoTime();
+        Object tickEvent = FlightEvents.tickStarted();
+
+        int tick = executeWithinScriptThread(() -> {
+            int newTick = ++data.get().tick;
+            TickInputs tickInputs = this.tickInputs;
+            if (tickInputs != null) {
+                tickInputs.applyInputs(newTick);
+            }
+            return newTick;
+        });
+        executingTick = tick;
 
-        executeWithinScriptThread(() -> ++data.get().tick);
-
+        // runnables scheduled by the scripts started below should be started on the next tick only
+        List<ScriptContext.NamedRunnable> runnablesToStart;
         synchronized (newRunnables) {
-            while (!newRunnables.isEmpty()) {
-                ScriptContext.NamedRunnable runnable = newRunnables.remove(randomSource.nextInt(newRunnables.size()));
-                ThreadContextImpl thread = new ThreadContextImpl(runnable);
-                thread.start(); // actually it is delayed right after starting
-                delayedTickThreads.add(thread); // to support getThreadContext call
+            runnablesToStart = new ArrayList<>(newRunnables);
+            newRunnables.clear();
+        }
+        while (!runnablesToStart.isEmpty()) {
+            ScriptContext.NamedRunnable runnable = runnablesToStart.remove(randomSource.nextInt(runnablesToStart.size()));
+            ObjIntConsumer<String> scriptStartListener = this.scriptStartListener;
+            if (scriptStartListener != null) {
+                scriptStartListener.accept(runnable.name(), tick);
+            }
+            ThreadContextImpl thread = new ThreadContextImpl(runnable);
+            delayedTickThreads.add(thread);
+            thread.start();
+
+            if (!backend.startsStrandsInOrder()) {
+                // Starting scripts one by one keeps the order deterministic for backends running them in parallel
+                waitTillNothingExecutes();
             }
         }
 
@@ -96,60 +158,113 @@ class PerTickExecutor {
             waitTillNothingExecutes();
             List<ThreadContextImpl> threadsLeft = new ArrayList<>();
 
-            for (ThreadContextImpl thread : delayedTickThreads) {
-                assert thread.isDelayed();
+            // Threads due on this tick and woken threads are resumed in the same order as if all threads were checked
+            Queue<ThreadContextImpl> threadsToCheck = new PriorityQueue<>(Comparator.comparingLong(thread -> thread.sequence));
+            threadsToCheck.addAll(delayedTickThreads);
+            threadsToCheck.addAll(tickWheel.removeDue(tick));
+            takeWokenThreads(threadsToCheck, Long.MIN_VALUE);
+
+            ThreadContextImpl thread;
+            while ((thread = threadsToCheck.poll()) != null) {
+                assert thread.isSuspended();
                 boolean finished = false;
                 if (thread.tryContinue()) {
                     finished = thread.tryJoin();
                 }
                 if (!finished) {
-                    threadsLeft.add(thread);
+                    int targetTick = thread.getTargetTick();
+                    if (targetTick != NO_TARGET_TICK) {
+                        tickWheel.add(targetTick, thread);
+                    } else if (thread.isParked()) {
+                        parkedThreads.add(thread);
+                    } else {
+                        threadsLeft.add(thread);
+                    }
                 }
+
+                // threads woken by this one are checked on this tick only if they were not checked yet
+                takeWokenThreads(threadsToCheck, thread.sequence);
             }
 
-            assert delayedTickThreads.stream().noneMatch(t ->
-                    isRunning(t.thread));
+            assert delayedTickThreads.stream().allMatch(ThreadContextImpl::isSuspended);
             delayedTickThreads.clear();
             delayedTickThreads.addAll(threadsLeft);
+            metrics.tickExecuted(System.nanoTime() - startNanos,
+                    delayedTickThreads.size() + tickWheel.size() + parkedThreads.size());
+        }
+        FlightEvents.tickEnded(tickEvent, tick);
+    }
+
+    private void takeWokenThreads(Queue<ThreadContextImpl> threadsToCheck, long afterSequence) {
+        synchronized (wokenThreads) {
+            wokenThreads.removeIf(thread -> {
+                if (thread.sequence <= afterSequence) return false;
+                // threads that are not parked are checked anyway
+                if (parkedThreads.remove(thread)) {
+                    threadsToCheck.add(thread);
+                }
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Advances the tick counter over ticks on which nothing can happen, i.e. when no scripts are scheduled
+     * and every delayed script waits for a known tick. The tick on which the earliest script wakes up is not skipped.
+     * @return number of skipped ticks
+     */
+    int skipIdleTicks(int maxTicks) {
+        assertIsExecutorThread();
+        if (maxTicks <= 0 || !scheduledRunnables.isEmpty()) return 0;
+
+        // an arbitrary condition can become true on any tick, parked threads can only be woken by other scripts
+        if (!delayedTickThreads.isEmpty() || !wokenThreads.isEmpty()) return 0;
+
+        int earliestTargetTick = tickWheel.earliestTargetTick();
+        if (earliestTargetTick == Integer.MAX_VALUE && maxTicks == Integer.MAX_VALUE && tickInputs == null) {
+            // nothing is going to happen at all, let the caller decide when to stop
+            return 0;
         }
 
+        return executeWithinScriptThread(() -> {
+            // ticks with inputs are not skipped
+            TickInputs tickInputs = this.tickInputs;
+            int targetTick = tickInputs != null
+                    ? Math.min(earliestTargetTick, tickInputs.nextInputTick())
+                    : earliestTargetTick;
+            if (targetTick == Integer.MAX_VALUE && maxTicks == Integer.MAX_VALUE) return 0;
+
+            PerTickExecutorData data = this.data.get();
+            int skipped = (int) Math.min((long) targetTick - 1 - data.tick, maxTicks);
+            if (skipped <= 0) return 0;
+            data.tick += skipped;
+            metrics.ticksSkipped(skipped);
+            return skipped;
+        });
     }
 
     private void assertIsExecutorThread() {
         assert Thread.currentThread() == executorThread;
     }
 
-    private static boolean isRunning(TickThread tickThread) {
-        return tickThread.getState() == State.RUNNING
-        || tickThread.getState() == State.NEW
-        || tickThread.getState() == State.STARTED;
-    }
-
     private void waitTillNothingExecutes() {
-        long startTime = System.nanoTime();
-        boolean nothingExecutes = false;
-        while (System.nanoTime() - startTime < JOIN_TIMEOUT_MILLIS*1_000_000 && !nothingExecutes) {
-            nothingExecutes = delayedTickThreads.stream().noneMatch(t -> isRunning(t.thread));
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
-        if (!nothingExecutes) {
+        if (!barrier.awaitQuiescence(JOIN_TIMEOUT_MILLIS)) {
             throw new IllegalStateException("By this time no scripts or function should be in progress");
         }
     }
 
     <T> T executeWithinScriptThread(Supplier<T> callable) {
-        if (Thread.currentThread() == fiberThread.get()) {
+        if (backend.isScriptThread()) {
             return callable.get();
         } else {
             waitTillNothingExecutes();
-            Fiber<T> thread = new Fiber<>("Between ticks execution", scheduler, callable::get);
-            thread.start();
+            metrics.scriptThreadHop();
+
+            // No tick thread runs at this point, so the callable can be executed directly on the scheduler thread
+            // without starting a fiber for it
+            Future<T> result = backend.submit(callable::get);
             try {
-                return thread.get();
+                return result.get();
             } catch (ExecutionException e) {
                 throw new RuntimeException(e);
             } catch (InterruptedException e) {
@@ -163,65 +278,130 @@ class PerTickExecutor {
         return executeWithinScriptThread(() -> data.get().tick);
     }
 
+    // same as getCurrentTick right after a tick is executed, but without switching to the script thread
+    int getLastExecutedTick() {
+        assertIsExecutorThread();
+        return executingTick;
+    }
+
     ArrayList<String> getActiveRunnables() {
         assertIsExecutorThread();
 
         ArrayList<String> runnables = new ArrayList<>();
         scheduledRunnables.forEach(runnable -> runnables.add(runnable.name()));
-        delayedTickThreads.forEach(thread -> runnables.add(thread.runnableName));
+
+        List<ThreadContextImpl> threads = new ArrayList<>(delayedTickThreads);
+        tickWheel.forEach(threads::add);
+        threads.addAll(parkedThreads);
+        threads.sort(Comparator.comparingLong(thread -> thread.sequence));
+        threads.forEach(thread -> runnables.add(thread.runnableName));
         return runnables;
     }
 
-    void printlnMarked(String s) {
-        printfMarked("%s%n", s);
+    void setTraceSink(TraceSink traceSink) {
+        this.traceSink = traceSink;
     }
 
-    void printfMarked(String format, Object... args) {
-        System.out.printf(System.identityHashCode(this) + ": " + format, args);
+    TraceSink getTraceSink() {
+        return traceSink;
     }
 
-    private class TickThread extends Fiber<Void> {
-        private final AtomicReference<ThreadContextImpl> threadContext = new AtomicReference<>();
-
-        TickThread(SuspendableRunnable runnable, String name) {
-            super(name, scheduler, runnable);
+    // should be checked before building a message
+    boolean isTraced(TraceLevel level, TraceCategory category) {
+        return traceSink.isEnabled(level, category);
+    }
 
-            assertIsExecutorThread();
+    void trace(TraceLevel level, TraceCategory category, String message) {
+        TraceSink traceSink = this.traceSink;
+        if (traceSink.isEnabled(level, category)) {
+            traceSink.trace(traceSource, level, category, message);
         }
     }
 
     private class ThreadContextImpl implements ThreadContext {
-        private final TickThread thread;
+        private final ScriptStrand thread;
         private final AtomicReference<UntilContext> untilContext = new AtomicReference<>();
+        private volatile RunState runState = RunState.NEW; // changed through the barrier only
 
+        private final long sequence = nextThreadSequence++;
         private final String runnableName;
+        private final ScriptContext.NamedRunnable namedRunnable;
         private final SuspendableRunnable suspendableRunnable;
 
         private ThreadContextImpl(ScriptContext.NamedRunnable runnable) {
             assertIsExecutorThread();
 
             runnableName = runnable.name();
+            namedRunnable = runnable;
             suspendableRunnable = () -> {
-                this.delayUntil(() -> true); // required by executeTick
-                printlnMarked("Actually starting " + runnableName);
-                runnable.run();
-                printlnMarked("Successfully finished " + runnableName);
+                try {
+                    this.delayUntil(() -> true); // required by executeTick
+                    if (isTraced(DEBUG, SCRIPTS)) trace(DEBUG, SCRIPTS, "Actually starting " + runnableName);
+                    if (FlightEvents.isRecording()) {
+                        FlightEvents.scriptStarted(runnableName, runnable.activator(), data.get().tick);
+                    }
+                    runnable.run();
+                    if (isTraced(DEBUG, SCRIPTS)) trace(DEBUG, SCRIPTS, "Successfully finished " + runnableName);
+                } catch (RuntimeException | Error | InterruptedException e) {
+                    markFinished();
+                    throw e;
+                }
+                markFinished();
             };
-            thread = new TickThread(suspendableRunnable, "TickThread - " + runnable.name());
-            thread.threadContext.set(this);
+            thread = backend.newStrand("TickThread - " + runnable.name(), suspendableRunnable);
+            thread.setThreadContext(this);
+            metrics.strandCreated();
+        }
+
+        private void markFinished() {
+            metrics.scriptFinished();
+            if (FlightEvents.isRecording()) {
+                FlightEvents.scriptFinished(runnableName, namedRunnable.activator(), data.get().tick);
+            }
+            if (runState == RunState.RUNNING) {
+                barrier.threadSuspended(() -> runState = RunState.FINISHED);
+            } else {
+                // interrupted while delayed, e.g. when the simulation is closed
+                runState = RunState.FINISHED;
+            }
         }
 
         // executed by TickThread.thread
         @Override
         public void delayUntil(BooleanSupplier untilPredicate) throws SuspendExecution {
+            suspendUntil(untilPredicate, NO_TARGET_TICK, null);
+        }
+
+        // executed by TickThread.thread
+        @Override
+        public void delayUntil(BooleanSupplier untilPredicate, Consumer<Runnable> wakeUpRegistrar) throws SuspendExecution {
+            suspendUntil(untilPredicate, NO_TARGET_TICK, wakeUpRegistrar);
+        }
+
+        // executed by TickThread.thread
+        @Override
+        public void delayUntilTick(int targetTick) throws SuspendExecution {
+            suspendUntil(() -> data.get().tick >= targetTick, targetTick, null);
+        }
+
+        private void suspendUntil(BooleanSupplier untilPredicate, int targetTick,
+                                  @Nullable Consumer<Runnable> wakeUpRegistrar) throws SuspendExecution {
             assertIsFiberThread();
 
             if (untilPredicate.getAsBoolean()) return;
 
-            UntilContext oldContext = untilContext.getAndUpdate(old -> new UntilContext(untilPredicate));
+            UntilContext oldContext = untilContext.getAndUpdate(old ->
+                    new UntilContext(backend.newLatch(), untilPredicate, targetTick, wakeUpRegistrar));
             assert oldContext == null || oldContext.latch.getCount() == 0;
             UntilContext untilContext = this.untilContext.get();
+            if (wakeUpRegistrar != null) {
+                wakeUpRegistrar.accept(this::wakeUp);
+            }
 
+            if (FlightEvents.isRecording()) {
+                FlightEvents.scriptSuspended(runnableName, namedRunnable.activator(), data.get().tick);
+            }
+            barrier.threadSuspended(() -> runState = RunState.DELAYED);
             try {
                 do {
                     untilContext.latch.await();
@@ -231,7 +411,10 @@ class PerTickExecutor {
                 Thread.currentThread().interrupt();
                 throw new TerminateScriptException(e);
             }
-            printlnMarked("Resuming after delay - " + thread.threadContext.get().runnableName);
+            if (isTraced(DEBUG, SCRIPTS)) trace(DEBUG, SCRIPTS, "Resuming after delay - " + runnableName);
+            if (FlightEvents.isRecording()) {
+                FlightEvents.scriptResumed(runnableName, namedRunnable.activator(), data.get().tick);
+            }
         }
 
         boolean tryContinue() {
@@ -239,14 +422,19 @@ class PerTickExecutor {
 
             boolean canBeResumed = executeWithinScriptThread(() -> {
                 UntilContext untilContext = this.untilContext.get();
-                return untilContext == null || untilContext.condition.getAsBoolean();
+                if (untilContext == null || untilContext.condition.getAsBoolean()) return true;
+                if (untilContext.wakeUpRegistrar != null) {
+                    untilContext.wakeUpRegistrar.accept(this::wakeUp);
+                }
+                return false;
             });
             if (canBeResumed) {
                 UntilContext untilContext = this.untilContext.get();
-                if (untilContext != null) {
+                if (untilContext != null && runState == RunState.DELAYED) {
+                    barrier.threadResumed(() -> runState = RunState.RUNNING);
+                    metrics.scriptResumed();
                     untilContext.latch.countDown();
                 }
-                //printlnMarked(runnableName + "- resumed");
             }
             return canBeResumed;
         }
@@ -254,18 +442,25 @@ class PerTickExecutor {
         private boolean tryJoin() throws TimeoutException {
             assertIsExecutorThread();
 
+            if (!barrier.await(this::isSuspended, JOIN_TIMEOUT_MILLIS)) {
+                thread.cancel();
+                metrics.runAwayTimeout();
+                if (FlightEvents.isRecording()) {
+                    FlightEvents.scriptAborted(runnableName, namedRunnable.activator(), executingTick, "run-away");
+                }
+                throw new TimeoutException(
+                        String.format("Thread '%s' is run-away. Probably you forgot to add 'delay'?",
+                                runnableName));
+            }
+            if (runState == RunState.DELAYED) {
+                return false;
+            }
+
             try {
-                thread.join(JOIN_TIMEOUT_MILLIS, MILLISECONDS);
+                thread.join(JOIN_TIMEOUT_MILLIS);
                 return true;
             } catch (TimeoutException e) {
-                if (isDelayed()) {
-                    return false;
-                } else {
-                    thread.cancel(true);
-                    throw new TimeoutException(
-                            String.format("Thread '%s' is run-away. Probably you forgot to add 'delay'?",
-                                    thread.threadContext.get().runnableName));
-                }
+                throw new IllegalStateException("Finished thread has not terminated in time", e);
             } catch (ExecutionException e) {
                 Throwable cause = e.getCause();
                 throw new RuntimeException(cause != null ? cause : e);
@@ -275,28 +470,65 @@ class PerTickExecutor {
             }
         }
 
-        private boolean isDelayed() {
-            assertIsExecutorThread();
+        private int getTargetTick() {
+            UntilContext untilContext = this.untilContext.get();
+            return untilContext != null && runState == RunState.DELAYED ? untilContext.targetTick : NO_TARGET_TICK;
+        }
+
+        // executed by the script thread
+        private void wakeUp() {
+            wokenThreads.add(this);
+        }
+
+        private boolean isParked() {
+            UntilContext untilContext = this.untilContext.get();
+            return untilContext != null && runState == RunState.DELAYED && untilContext.wakeUpRegistrar != null;
+        }
 
-            return !isRunning(thread);
+        private boolean isSuspended() {
+            return runState == RunState.DELAYED || runState == RunState.FINISHED;
         }
 
         void start() {
             assertIsExecutorThread();
 
+            barrier.threadResumed(() -> runState = RunState.RUNNING);
+            metrics.scriptStarted();
             thread.start();
         }
     }
 
     static class UntilContext {
-        final CountDownLatch latch = new CountDownLatch(1);
+        final ResumeLatch latch;
         final BooleanSupplier condition;
+        final int targetTick; // NO_TARGET_TICK when the thread waits for an arbitrary condition
+        // set when the condition is not checked on every tick, but only after the thread is woken
+        @Nullable final Consumer<Runnable> wakeUpRegistrar;
 
-        private UntilContext(BooleanSupplier condition) {
+        private UntilContext(ResumeLatch latch, BooleanSupplier condition, int targetTick,
+                             @Nullable Consumer<Runnable> wakeUpRegistrar) {
+            this.latch = latch;
             this.condition = condition;
+            this.targetTick = targetTick;
+            this.wakeUpRegistrar = wakeUpRegistrar;
         }
     }
 
+    interface TickInputs {
+        // executed by the script thread at the start of each tick, before any scripts are resumed
+        void applyInputs(int tick);
+
+        // executed by the script thread, Integer.MAX_VALUE when there are no more inputs
+        int nextInputTick();
+    }
+
+    private enum RunState {
+        NEW,
+        RUNNING,
+        DELAYED,
+        FINISHED
+    }
+
     private static class PerTickExecutorData {
         private int tick = -1;
     }
@@ -305,4 +537,15 @@ class PerTickExecutor {
 interface ThreadContext {
     // executed by TickThread.thread
     void delayUntil(BooleanSupplier untilPredicate) throws SuspendExecution;
+
+    /**
+     * Same as {@link #delayUntil(BooleanSupplier)}, but the predicate is only checked after the thread is woken.
+     * @param wakeUpRegistrar called by the script thread with a callback that wakes this thread,
+     *                        the callback should be called once the predicate may have become true
+     */
+    // executed by TickThread.thread
+    void delayUntil(BooleanSupplier untilPredicate, Consumer<Runnable> wakeUpRegistrar) throws SuspendExecution;
+
+    // executed by TickThread.thread
+    void delayUntilTick(int targetTick) throws SuspendExecution;
 }
\ No newline at end of file
@@ -2,7 +2,6 @@ package com.github.tarcv.ztest.simulation;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Player implements Owner {
@@ -29,22 +28,29 @@ public class Player implements Owner {
     }
 
     void A_Print(String format, Object[] arguments) {
-        Hud.print(format, arguments);
+        Hud.print(simulation, format, arguments);
     }
 
     void printbold(String format, Object[] args) {
-        Hud.print(format, args);
+        Hud.print(simulation, format, args);
     }
 
     public void joinGame() {
-        simulation.withTickLock(() -> {
+        simulation.withTickLockInternal(() -> {
+            simulation.recordInput(new InputJournal.JoinGame(getIndex()));
             if (pawn == null) {
                 this.pawn = createPawn();
-                simulation.printfMarked("- %s joined the game as %d%n", name, this.pawn.getClassIndex());
+                if (simulation.isTraced(TraceLevel.INFO, TraceCategory.PLAYERS)) {
+                    simulation.trace(TraceLevel.INFO, TraceCategory.PLAYERS,
+                            String.format("- %s joined the game as %d", name, this.pawn.getClassIndex()));
+                }
                 simulation.onPlayerJoined(pawn);
             } else if (pawn.getHealth() <= 0) {
                 this.pawn = createPawn();
-                simulation.printfMarked("- %s respawned as %d%n", name, this.pawn.getClassIndex());
+                if (simulation.isTraced(TraceLevel.INFO, TraceCategory.PLAYERS)) {
+                    simulation.trace(TraceLevel.INFO, TraceCategory.PLAYERS,
+                            String.format("- %s respawned as %d", name, this.pawn.getClassIndex()));
+                }
                 simulation.onPlayerRespawned(pawn);
             }
         });
@@ -87,9 +93,7 @@ public class Player implements Owner {
     }
 
     public boolean isBot() {
-        AtomicBoolean result = new AtomicBoolean();
-        simulation.withTickLock(() -> result.set(isBot));
-        return result.get();
+        return isBot;
     }
 
     int getInfo(int whichInfo) {
@@ -106,24 +110,38 @@ public class Player implements Owner {
     }
 
     public void setCVar(String name, Object newValue) {
-        simulation.withTickLock(() -> {
+        simulation.withTickLockInternal(() -> {
+            setCVarInternal(name, newValue);
+            simulation.recordInput(new InputJournal.SetUserCVar(getIndex(), name, newValue));
+        });
+    }
+
+    // changes made by scripts are reproduced by replaying them, so they are not journaled
+    void setCVarInternal(String name, Object newValue) {
+        simulation.assertTickLockHeld(); {
             if (!simulation.getCVarType(name).isPlayerOwned()) throw new IllegalArgumentException("CVAR is not a user one");
             userCvarValues.put(name, newValue);
-        });
+        }
     }
 
     public int getHealth() {
         AtomicInteger health = new AtomicInteger();
-        simulation.withTickLock(() -> health.set(pawn.getHealth()));
+        simulation.withTickLockInternal(() -> health.set(pawn.getHealth()));
         return health.get();
     }
 
     public void downKey(int key) {
-        simulation.withTickLock(() -> buttonsDown = buttonsDown | key);
+        simulation.withTickLockInternal(() -> {
+            buttonsDown = buttonsDown | key;
+            simulation.recordInput(new InputJournal.SetKey(getIndex(), key, true));
+        });
     }
 
     public void upKey(int key) {
-        simulation.withTickLock(() -> buttonsDown = buttonsDown & (~key));
+        simulation.withTickLockInternal(() -> {
+            buttonsDown = buttonsDown & (~key);
+            simulation.recordInput(new InputJournal.SetKey(getIndex(), key, false));
+        });
     }
 
     int getButtonState() {
@@ -135,7 +153,8 @@ public class Player implements Owner {
     }
 
     public void fragOther(Player victim) {
-        simulation.withTickLock(() -> {
+        simulation.withTickLockInternal(() -> {
+            simulation.recordInput(new InputJournal.Frag(getIndex(), victim.getIndex()));
             victim.pawn.damageThing(999, new DamageFrag(simulation), pawn);
         });
     }
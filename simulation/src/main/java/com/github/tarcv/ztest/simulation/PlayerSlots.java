@@ -0,0 +1,66 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Players of a simulation by their player numbers. Should be accessed from the script thread only.
+ */
+class PlayerSlots {
+    static final int DEFAULT_CAPACITY = 32;
+
+    private Player[] slots = new Player[DEFAULT_CAPACITY];
+    private final Map<Player, Integer> numbers = new IdentityHashMap<>();
+    private final List<Player> active = new ArrayList<>();
+    private final List<Player> activeView = Collections.unmodifiableList(active);
+
+    /**
+     * Can only be changed while there are no players
+     */
+    void setCapacity(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity should be positive");
+        if (!active.isEmpty()) throw new IllegalStateException("Capacity can only be changed before players are added");
+        slots = new Player[capacity];
+    }
+
+    int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return number of the slot the player was put into
+     */
+    int add(Player player) {
+        if (numbers.containsKey(player)) throw new IllegalArgumentException("Player is already added");
+        // players are never removed, so slots are taken in order and the next free one is right after the last player
+        int number = active.size();
+        if (number >= slots.length) throw new IllegalStateException("Max number of players is already reached");
+
+        slots[number] = player;
+        numbers.put(player, number);
+        active.add(player);
+        return number;
+    }
+
+    Player get(int number) {
+        Player player = number >= 0 && number < slots.length ? slots[number] : null;
+        if (player == null) throw new IllegalStateException("Player with this number is not present");
+        return player;
+    }
+
+    int indexOf(Player player) {
+        Integer number = numbers.get(player);
+        if (number == null) throw new IllegalStateException("Player is not present in the simulation");
+        return number;
+    }
+
+    /**
+     * @return unmodifiable view of present players ordered by their numbers, which reflects later changes
+     */
+    List<Player> active() {
+        return activeView;
+    }
+}
@@ -31,6 +31,7 @@ public class PowerupGiver extends CustomInventory {
     @Override
     public final Object Pickup() {
         if (hasFlag("INVENTORY.AUTOACTIVATE") && hasFlag("INVENTORY.ALWAYSPICKUP")) {
+            simulation.getMetrics().inventoryObjectCreated();
             getActivator().pickItem(new Powerup(simulation));
         } else {
             throw new UnsupportedOperationException();
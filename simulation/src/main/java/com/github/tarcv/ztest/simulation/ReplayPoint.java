@@ -0,0 +1,61 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Inputs recorded up to some tick of a simulation, from which any number of independent simulations
+ * in the same state can be created by replaying them with the same seed.
+ * <p>
+ * State is not copied: scripts of the setup are executed again, only idle ticks are skipped while replaying.
+ * So each replay costs about as much as the setup minus its idle ticks.
+ * Replay points are immutable and can be shared between threads.
+ */
+public final class ReplayPoint<T extends ScriptContext> {
+    private final long seed;
+    private final SimulationBackend backend;
+    private final int tick;
+    private final List<InputJournal.Input> inputs;
+    private final boolean fastForwardIdleTicks;
+
+    ReplayPoint(long seed, SimulationBackend backend, int tick, List<InputJournal.Input> inputs,
+                boolean fastForwardIdleTicks) {
+        this.seed = seed;
+        this.backend = backend;
+        this.tick = tick;
+        this.inputs = inputs;
+        this.fastForwardIdleTicks = fastForwardIdleTicks;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * Creates a new simulation and replays the recorded inputs in it. The new simulation has replay enabled
+     * and the same fast-forward setting as the original one.
+     * @param scriptsInstaller should register the same scripts as the ones in the original simulation
+     *                         with new instances of map classes, so ACS variables start from their initial values,
+     *                         e.g. {@code simulation -> new MapXXX().createMainScriptContext(simulation)}
+     */
+    public Simulation<T> replay(Consumer<Simulation<T>> scriptsInstaller) {
+        Simulation<T> simulation = new Simulation<>(seed, backend);
+        try {
+            simulation.enableReplay();
+            simulation.setFastForwardIdleTicks(true);
+            scriptsInstaller.accept(simulation);
+            for (InputJournal.Input input : inputs) {
+                input.replay(simulation);
+            }
+            if (simulation.getCurrentTick() != tick) {
+                throw new IllegalStateException(String.format(
+                        "Replayed simulation ended at tick %d instead of %d", simulation.getCurrentTick(), tick));
+            }
+            simulation.setFastForwardIdleTicks(fastForwardIdleTicks);
+            return simulation;
+        } catch (RuntimeException | Error e) {
+            simulation.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.io.PrintStream;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the last messages in memory without locking, they are written only when dumped
+ */
+public class RingBufferTraceSink implements TraceSink {
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final TraceLevel minLevel;
+    private final Set<TraceCategory> categories;
+
+    /**
+     * @param capacity is rounded up to a power of 2
+     */
+    public RingBufferTraceSink(int capacity, TraceLevel minLevel) {
+        this(capacity, minLevel, EnumSet.allOf(TraceCategory.class));
+    }
+
+    public RingBufferTraceSink(int capacity, TraceLevel minLevel, Set<TraceCategory> categories) {
+        if (capacity <= 0 || capacity > 1 << 30) throw new IllegalArgumentException("capacity is out of range");
+        int actualCapacity = Integer.highestOneBit(capacity - 1) << 1;
+        if (capacity == 1) actualCapacity = 1;
+        this.entries = new AtomicReferenceArray<>(actualCapacity);
+        this.mask = actualCapacity - 1;
+        this.minLevel = minLevel;
+        this.categories = EnumSet.copyOf(categories);
+    }
+
+    @Override
+    public boolean isEnabled(TraceLevel level, TraceCategory category) {
+        return level.compareTo(minLevel) >= 0 && categories.contains(category);
+    }
+
+    @Override
+    public void trace(int source, TraceLevel level, TraceCategory category, String message) {
+        long sequence = nextSequence.getAndIncrement();
+        entries.set((int) (sequence & mask), new Entry(sequence, source, level, category, message));
+    }
+
+    /**
+     * Writes the kept messages from the oldest to the newest one. Messages added while dumping may be skipped.
+     */
+    @Override
+    public void dump(PrintStream out) {
+        long end = nextSequence.get();
+        long start = Math.max(0, end - entries.length());
+        for (long sequence = start; sequence < end; sequence++) {
+            Entry entry = entries.get((int) (sequence & mask));
+            if (entry == null || entry.sequence != sequence) {
+                // not written yet or already overwritten
+                continue;
+            }
+            out.printf("%d: [%s %s] %s%n", entry.source, entry.level, entry.category, entry.message);
+        }
+    }
+
+    private static class Entry {
+        final long sequence;
+        final int source;
+        final TraceLevel level;
+        final TraceCategory category;
+        final String message;
+
+        private Entry(long sequence, int source, TraceLevel level, TraceCategory category, String message) {
+            this.sequence = sequence;
+            this.source = source;
+            this.level = level;
+            this.category = category;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers of running instances of scripts by script name. Should be accessed from the script thread only.
+ */
+class RunningScripts {
+    private final Map<String, Instances> instances = new HashMap<>();
+
+    void started(String name) {
+        instances.computeIfAbsent(name, n -> new Instances()).count++;
+    }
+
+    void finished(String name) {
+        Instances scriptInstances = instances.get(name);
+        if (scriptInstances == null) throw new IllegalStateException("Script " + name + " is not running");
+        if (--scriptInstances.count == 0) {
+            instances.remove(name);
+            scriptInstances.waiters.forEach(Runnable::run);
+        }
+    }
+
+    boolean isRunning(String name) {
+        return instances.containsKey(name);
+    }
+
+    /**
+     * Calls the waiter once no instances of the script are running. Waiters are not called again
+     * when the script is restarted afterwards.
+     */
+    void whenFinished(String name, Runnable waiter) {
+        Instances scriptInstances = instances.get(name);
+        if (scriptInstances == null) {
+            waiter.run();
+        } else {
+            scriptInstances.waiters.add(waiter);
+        }
+    }
+
+    private static class Instances {
+        int count = 0;
+        final List<Runnable> waiters = new ArrayList<>(0);
+    }
+}
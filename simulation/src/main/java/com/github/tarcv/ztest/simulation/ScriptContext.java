@@ -10,6 +10,7 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.github.tarcv.ztest.simulation.AcsConstants.APROP_HEALTH;
@@ -30,6 +31,17 @@ public abstract class ScriptContext<T extends ScriptContext> {
             @Nullable MapContext<T> mapContext,
             ScriptContextCreator<T> supplier,
             List<Script<T>> scripts) {
+        this(simulation, mapContext, supplier, new ScriptTable<>(scripts));
+    }
+
+    /**
+     * @param scripts table of scripts, only used when this is the main script context of a map
+     */
+    public ScriptContext(
+            Simulation<T> simulation,
+            @Nullable MapContext<T> mapContext,
+            ScriptContextCreator<T> supplier,
+            ScriptTable<T> scripts) {
         if (mapContext == null) {
             this.isMainScriptContext = true;
             this.mapContext = new MapContext<T>(simulation, supplier, scripts);
@@ -46,7 +58,8 @@ public abstract class ScriptContext<T extends ScriptContext> {
     }
 
     protected void namedScriptWait(String name) throws SuspendExecution {
-        delayUntil(() -> !mapContext.executedScripts.contains(name));
+        delayUntil(() -> !mapContext.runningScripts.get().isRunning(name),
+                waiter -> mapContext.runningScripts.get().whenFinished(name, waiter));
     }
 
     protected void print(String format, Object... args) {
@@ -64,12 +77,18 @@ public abstract class ScriptContext<T extends ScriptContext> {
 
 
     protected void printBold(String format, Object... args) {
-        mapContext.simulation.getPlayers().forEach(p -> p.printbold(format, args));
+        List<Player> players = mapContext.simulation.getPlayers();
+        for (int i = 0; i < players.size(); i++) {
+            players.get(i).printbold(format, args);
+        }
     }
 
     protected void SetPlayerProperty(int who, int value, int which) {
         if (who == 1) {
-            mapContext.simulation.getPlayers().forEach(p -> p.setProperty(which, value));
+            List<Player> players = mapContext.simulation.getPlayers();
+            for (int i = 0; i < players.size(); i++) {
+                players.get(i).setProperty(which, value);
+            }
         } else if (who == 0) {
             Thing activator = activatorInternal();
             if (activator instanceof PlayerPawn) {
@@ -109,12 +128,13 @@ public abstract class ScriptContext<T extends ScriptContext> {
     protected void delay(int tics) throws SuspendExecution {
         if (tics <= 0) throw new IllegalArgumentException("tics number must be positive");
         int targetTic = mapContext.simulation.getCurrentTick() + tics;
-        delayUntil(() -> mapContext.simulation.getCurrentTick() >= targetTic);
+        mapContext.simulation.getThreadContext()
+                .delayUntilTick(targetTic);
     }
 
-    private void delayUntil(BooleanSupplier predicate) throws SuspendExecution {
+    private void delayUntil(BooleanSupplier predicate, Consumer<Runnable> wakeUpRegistrar) throws SuspendExecution {
         mapContext.simulation.getThreadContext()
-                .delayUntil(predicate);
+                .delayUntil(predicate, wakeUpRegistrar);
     }
 
     protected int getCVar(String name) {
@@ -197,7 +217,7 @@ public abstract class ScriptContext<T extends ScriptContext> {
     protected boolean isTidUsed(int tid) {
         if (tid == 0) throw new IllegalArgumentException("tid should not be 0");
         return !mapContext.simulation
-                .assertedGetThingsByTid(tid, null)
+                .getThingsByTid(tid, null)
                 .isEmpty();
     }
 
@@ -225,11 +245,11 @@ public abstract class ScriptContext<T extends ScriptContext> {
         }
 
         if (!cVarType.isPlayerOwned()) {
-            mapContext.simulation.setCVar(name, newValue);
+            mapContext.simulation.setCVarInternal(name, newValue);
         } else {
             Thing activator = activatorInternal();
             if (activator instanceof PlayerPawn) {
-                ((PlayerPawn) activator).getPlayer().setCVar(name, newValue);
+                ((PlayerPawn) activator).getPlayer().setCVarInternal(name, newValue);
             } else {
                 throw new IllegalStateException("activatorInternal must be a player");
             }
@@ -239,8 +259,8 @@ public abstract class ScriptContext<T extends ScriptContext> {
     protected void thing_Damage2(int tid, int damage, String mod) {
         DamageType damageType;
         try {
-            damageType = (DamageType) mapContext.simulation.classForSimpleName(mod).newInstance();
-        } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+            damageType = (DamageType) mapContext.simulation.classForSimpleName(mod).newInstance(mapContext.simulation);
+        } catch (ClassNotFoundException e) {
             throw new IllegalArgumentException(e);
         }
         mapContext.simulation.assertedGetThingsByTid(tid, activatorInternal()).forEach(
@@ -301,12 +321,8 @@ public abstract class ScriptContext<T extends ScriptContext> {
     }
 
     private void scheduleScriptsByType(ScriptType type, Thing activator) {
-        synchronized (mapContext.scripts) {
-            mapContext.scripts.forEach(script -> {
-                if (script.type.contains(type)) {
-                    scheduleScriptInternal(activator, script, true, new Object[0]);
-                }
-            });
+        for (Script<T> script : mapContext.scripts.ofType(type)) {
+            scheduleScriptInternal(activator, script, true, new Object[0]);
         }
     }
 
@@ -316,12 +332,9 @@ public abstract class ScriptContext<T extends ScriptContext> {
     }
 
     private ScriptContext.Script<T> getScriptForName(String name) {
-        return mapContext.scripts.stream()
-                    .filter(s -> s.name.equals(name))
-                    .findAny()
-                    .orElseGet(() -> {
-                        throw new IllegalArgumentException("Script " + name + " not found");
-                    });
+        Script<T> script = mapContext.scripts.get(name);
+        if (script == null) throw new IllegalArgumentException("Script " + name + " not found");
+        return script;
     }
 
     private void scheduleScriptInternal(Thing activator, Script<T> script, boolean always, Object[] args) {
@@ -352,7 +365,19 @@ public abstract class ScriptContext<T extends ScriptContext> {
     }
 
     public void pukeScript(Thing activator, String name, Object... args) {
-        mapContext.simulation.withTickLock(() -> scheduleScriptInternal(activator, name, true, args));
+        Simulation<T> simulation = mapContext.simulation;
+        simulation.withTickLockInternal(() -> {
+            int activatorOrdinal = activator != null
+                    ? simulation.getThingOrdinal(activator)
+                    : InputJournal.PukeScript.NO_ACTIVATOR;
+            simulation.recordInput(new InputJournal.PukeScript(
+                    simulation.getScriptsIndex(this), activatorOrdinal, name, args));
+            scheduleScriptInternal(activator, name, true, args);
+        });
+    }
+
+    boolean isSameMap(ScriptContext<?> other) {
+        return mapContext == other.mapContext;
     }
 
     void onPlayerRespawned(PlayerPawn player) {
@@ -367,25 +392,21 @@ public abstract class ScriptContext<T extends ScriptContext> {
     }
 
     List<NamedRunnable> createInitRunnables() {
-        synchronized (mapContext.scripts) {
-            List<Script<T>> openScripts = mapContext.scripts.stream()
-                    .filter(script -> script.type.contains(OPEN))
-                    .collect(Collectors.toList());
-            List<String> openScriptsNames = openScripts.stream()
-                    .map(script -> script.name)
-                    .collect(Collectors.toList());
-            mapContext.executedScripts.addAll(openScriptsNames);
-            return openScripts.stream()
-                    .map(script -> getScriptRunnable(script, new Object[0]))
-                    .collect(Collectors.toList());
-        }
+        List<Script<T>> openScripts = mapContext.scripts.ofType(OPEN);
+        List<String> openScriptsNames = openScripts.stream()
+                .map(script -> script.name)
+                .collect(Collectors.toList());
+        mapContext.simulation.withTickLockInternal(() -> openScriptsNames.forEach(mapContext.runningScripts.get()::started));
+        return openScripts.stream()
+                .map(script -> getScriptRunnable(script, new Object[0]))
+                .collect(Collectors.toList());
     }
 
     private void scheduleScriptOnThisContext(Script<T> script, boolean always, Object... args) {
-        if (always || !mapContext.executedScripts.contains(script.name)) {
-            boolean added = mapContext.executedScripts.add(script.name);
-            assert added;
-            // name is removed by runnabled returned from getScriptRunnable
+        RunningScripts runningScripts = mapContext.runningScripts.get();
+        if (always || !runningScripts.isRunning(script.name)) {
+            runningScripts.started(script.name);
+            // the script is marked as finished by the runnable returned from getScriptRunnable
 
             NamedRunnable scriptRunnable = getScriptRunnable(script, args);
             mapContext.simulation.scheduleOnNextTic(scriptRunnable);
@@ -404,16 +425,23 @@ public abstract class ScriptContext<T extends ScriptContext> {
             @Override
             public void run() throws SuspendExecution {
                 try {
-                    assert mapContext.executedScripts.contains(script.name);
+                    assert mapContext.runningScripts.get().isRunning(script.name);
 
                     script.runnable.callScript(that, args);
-                    boolean removed = mapContext.executedScripts.remove(script.name);
-                    assert removed;
+                    mapContext.runningScripts.get().finished(script.name);
                 } catch (RuntimeException e) {
-                    boolean removed = mapContext.executedScripts.remove(script.name);
-                    assert removed;
+                    if (FlightEvents.isRecording()) {
+                        String reason = e instanceof TerminateScriptException ? "terminated" : e.toString();
+                        FlightEvents.scriptAborted(script.name, activator(), mapContext.simulation.getCurrentTick(), reason);
+                    }
+                    mapContext.runningScripts.get().finished(script.name);
                 }
             }
+
+            @Override
+            public Thing activator() {
+                return ((ScriptContext<?>) that).context.getActivator();
+            }
         };
     }
 
@@ -444,6 +472,11 @@ public abstract class ScriptContext<T extends ScriptContext> {
 
     protected interface NamedRunnable extends SuspendableRunnable {
         String name();
+
+        @Nullable
+        default Thing activator() {
+            return null;
+        }
     }
 }
 
@@ -0,0 +1,53 @@
+package com.github.tarcv.ztest.simulation;
+
+import com.github.tarcv.ztest.simulation.ScriptContext.Script;
+import com.github.tarcv.ztest.simulation.ScriptContext.ScriptType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable set of scripts of a map, indexed by name and by type. Meant to be created once per script class
+ * and shared by all its script contexts.
+ */
+public final class ScriptTable<T extends ScriptContext> {
+    private final List<Script<T>> scripts;
+    private final Map<String, Script<T>> byName;
+    private final Map<ScriptType, List<Script<T>>> byType = new EnumMap<>(ScriptType.class);
+
+    public ScriptTable(List<Script<T>> scripts) {
+        this.scripts = Collections.unmodifiableList(new ArrayList<>(scripts));
+        this.byName = new HashMap<>(scripts.size() * 2);
+        Map<ScriptType, List<Script<T>>> byType = new EnumMap<>(ScriptType.class);
+        for (Script<T> script : this.scripts) {
+            if (byName.put(script.name, script) != null) {
+                throw new IllegalArgumentException("Script " + script.name + " is defined twice");
+            }
+            for (ScriptType type : script.type) {
+                byType.computeIfAbsent(type, t -> new ArrayList<>()).add(script);
+            }
+        }
+        byType.forEach((type, typeScripts) -> this.byType.put(type, Collections.unmodifiableList(typeScripts)));
+    }
+
+    List<Script<T>> all() {
+        return scripts;
+    }
+
+    @Nullable
+    Script<T> get(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @return scripts of the type in the order they were declared
+     */
+    List<Script<T>> ofType(ScriptType type) {
+        return byType.getOrDefault(type, Collections.emptyList());
+    }
+}
@@ -2,18 +2,25 @@ package com.github.tarcv.ztest.simulation;
 
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static com.github.tarcv.ztest.simulation.Simulation.CVarTypes.USER;
 
-public class Simulation<T extends ScriptContext> {
+public class Simulation<T extends ScriptContext> implements AutoCloseable {
+    private final long seed;
+    private final SimulationBackend backendType;
+    private final InputJournal journal = new InputJournal();
     private final Random randomSource;
     private final ScriptThreadEnforcer<SimulationData> data;
     private final List<ScriptContext<T>> scriptEventListeners = Collections.synchronizedList(new ArrayList<>());
@@ -21,10 +28,26 @@ public class Simulation<T extends ScriptContext> {
     private final Map<String, CVarTypes> cvarTypes = Collections.synchronizedMap(new HashMap<>());
     private final Map<String, Object> serverCvarValues = Collections.synchronizedMap(new HashMap<>());
     private final ClassGetter classGetter = new ClassGetter();
+    private volatile boolean fastForwardIdleTicks = false;
+    @Nullable private volatile InputLog.Writer inputLogWriter = null;
 
     public Simulation(long seed) {
+        this(seed, SimulationBackend.getDefault());
+    }
+
+    public Simulation(long seed, SimulationBackend backend) {
+        this(seed, backend, backend.create(Executors.newSingleThreadExecutor(), true));
+    }
+
+    Simulation(long seed, SimulationBackend backend, ExecutorService schedulerExecutor) {
+        this(seed, backend, backend.create(schedulerExecutor, false));
+    }
+
+    private Simulation(long seed, SimulationBackend backendType, ExecutionBackend backend) {
+        this.seed = seed;
+        this.backendType = backendType;
         this.randomSource = new Random(seed);
-        this.executor = new PerTickExecutor(randomSource);
+        this.executor = new PerTickExecutor(randomSource, backend);
         this.data = new ScriptThreadEnforcer<>(executor, new SimulationData());
         this.cvarTypes.put("playerclass", USER);
     }
@@ -32,20 +55,65 @@ public class Simulation<T extends ScriptContext> {
     public Player addPlayer(String name, int health, int armor, boolean isBot) {
         return executor.executeWithinScriptThread(() -> {
             Player player = new Player(this, name, health, armor, isBot);
-            addPlayerToArray(player);
+            data.get().players.add(player);
+            journal.record(new InputJournal.AddPlayer(name, health, armor, isBot));
             return player;
         });
     }
 
-    private void addPlayerToArray(Player player) {
-        executor.assertIsFiberThread();
-        for (int i = 0; i < data.get().players.length; i++) {
-                if (data.get().players[i] == null) {
-                    data.get().players[i] = player;
-                    return;
-                }
-            }
-            throw new IllegalStateException("Max number of players is already reached");
+    /**
+     * Starts writing inputs of this simulation to a binary log, which can be replayed by {@link InputLog#replay}.
+     * Can only be called before the first tick. The log is completed when the simulation is closed.
+     */
+    public void recordInputs(Path file) throws IOException {
+        if (getCurrentTick() != -1) throw new IllegalStateException("Recording can only be started before the first tick");
+        if (inputLogWriter != null) throw new IllegalStateException("Inputs are already being recorded");
+
+        InputLog.Writer writer = new InputLog.Writer(file, seed, backendType);
+        inputLogWriter = writer;
+        journal.setListener(writer);
+        executor.setScriptStartListener(writer::onScriptStarted);
+    }
+
+    /**
+     * Counters that are updated as the simulation runs. Take {@link SimulationMetrics#snapshot()} to read them.
+     */
+    public SimulationMetrics getMetrics() {
+        return executor.getMetrics();
+    }
+
+    public Player getPlayer(int playerNumber) {
+        return executor.executeWithinScriptThread(() -> getPlayerByIndex(playerNumber));
+    }
+
+    /**
+     * Makes this simulation keep inputs given to it, so that {@link #replayPoint()} can be called later.
+     * Can only be called before the first tick.
+     */
+    public void enableReplay() {
+        if (getCurrentTick() != -1) throw new IllegalStateException("Replay can only be enabled before the first tick");
+        journal.keepInputs();
+    }
+
+    /**
+     * Captures inputs given to this simulation so far, so that the same state can be reproduced
+     * in independent simulations by replaying them. Requires {@link #enableReplay()}. Can only be called between ticks.
+     */
+    public ReplayPoint<T> replayPoint() {
+        return executor.executeWithinScriptThread(() -> new ReplayPoint<>(
+                seed, backendType, executor.getCurrentTick(), journal.getInputs(), fastForwardIdleTicks));
+    }
+
+    /**
+     * Sets how many players can be added, {@value PlayerSlots#DEFAULT_CAPACITY} by default.
+     * Can only be called before players are added.
+     */
+    public void setMaxPlayers(int maxPlayers) {
+        executor.executeWithinScriptThread(() -> {
+            data.get().players.setCapacity(maxPlayers);
+            journal.record(new InputJournal.SetMaxPlayers(maxPlayers));
+            return null;
+        });
     }
 
     public void registerScriptEventsListener(ScriptContext scriptContext) {
@@ -60,10 +128,37 @@ public class Simulation<T extends ScriptContext> {
         });
     }
 
-    void registerThing(Thing thing) {
+    /**
+     * @return id of the thing, which is also its ordinal
+     */
+    int registerThing(Thing thing) {
+        {
+            executor.assertIsFiberThread();
+            SimulationData simulationData = data.get();
+            simulationData.things.add(thing);
+            executor.getMetrics().thingCreated();
+            return simulationData.thingColumns.add();
+        }
+    }
+
+    ThingColumns getThingColumns() {
+        return data.get().thingColumns;
+    }
+
+    void onTidChanged(Thing thing, int oldTid, int newTid) {
         {
             executor.assertIsFiberThread();
-            data.get().things.add(thing);
+            Map<Integer, Set<Thing>> thingsByTid = data.get().thingsByTid;
+            if (oldTid != 0) {
+                Set<Thing> oldTidThings = thingsByTid.get(oldTid);
+                oldTidThings.remove(thing);
+                if (oldTidThings.isEmpty()) {
+                    thingsByTid.remove(oldTid);
+                }
+            }
+            if (newTid != 0) {
+                thingsByTid.computeIfAbsent(newTid, tid -> new LinkedHashSet<>()).add(thing);
+            }
         }
     }
 
@@ -79,36 +174,57 @@ public class Simulation<T extends ScriptContext> {
         executor.scheduleRunnable(runnable);
     }
 
+    /**
+     * @return unmodifiable view of players ordered by their numbers, which is not copied on each call
+     */
     List<Player> getPlayers() {
-        {
-            executor.assertIsFiberThread();
-            return Stream.of(data.get().players)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-        }
+        return data.get().players.active();
     }
 
     Player getPlayerByIndex(int playerNumber) {
-        {
-            executor.assertIsFiberThread();
-            Player player = data.get().players[playerNumber];
-            if (player == null) throw new IllegalStateException("Player with this number is not present");
-            return player;
-        }
+        return data.get().players.get(playerNumber);
     }
 
     int getPlayerIndex(Player player) {
+        return data.get().players.indexOf(player);
+    }
+
+    int getCurrentTick() {
+        return executor.getCurrentTick();
+    }
+
+    int getThingOrdinal(Thing thing) {
         {
             executor.assertIsFiberThread();
-            for (int i = 0; i < data.get().players.length; i++) {
-                if (data.get().players[i] == player) return i;
+            if (thing.simulation != this) throw new IllegalStateException("Thing is not present in the simulation");
+            return thing.getId();
+        }
+    }
+
+    int getScriptsIndex(ScriptContext<?> scriptContext) {
+        synchronized (scriptEventListeners) {
+            for (int i = 0; i < scriptEventListeners.size(); i++) {
+                if (scriptEventListeners.get(i).isSameMap(scriptContext)) return i;
             }
         }
-        throw new IllegalStateException("Player is not present in the simulation");
+        throw new IllegalStateException("Scripts are not registered in the simulation");
     }
 
-    int getCurrentTick() {
-        return executor.getCurrentTick();
+    void setScriptStartListener(ObjIntConsumer<String> listener) {
+        executor.setScriptStartListener(listener);
+    }
+
+    void recordInput(InputJournal.Input input) {
+        journal.record(input);
+    }
+
+    // executed when replaying inputs
+    void pukeScript(int scriptsIndex, int activatorOrdinal, String name, Object[] args) {
+        ScriptContext<T> scripts = scriptEventListeners.get(scriptsIndex);
+        Thing activator = activatorOrdinal == InputJournal.PukeScript.NO_ACTIVATOR
+                ? null
+                : executor.executeWithinScriptThread(() -> data.get().things.get(activatorOrdinal));
+        scripts.pukeScript(activator, name, args);
     }
 
     CVarTypes getCVarType(String name) {
@@ -139,13 +255,16 @@ public class Simulation<T extends ScriptContext> {
         return things;
     }
 
-    private List<Thing> getThingsByTid(int tid, @Nullable Thing activator) {
+    List<Thing> getThingsByTid(int tid, @Nullable Thing activator) {
         if (tid != 0) {
             {
                 executor.assertIsFiberThread();
-                return data.get().things.stream()
-                        .filter(t -> t.getTid() == tid)
-                        .collect(Collectors.toList());
+                Set<Thing> things = data.get().thingsByTid.get(tid);
+                if (things == null) {
+                    return Collections.emptyList();
+                }
+                // a copy, as callers may change TIDs of the returned things
+                return new ArrayList<>(things);
             }
         } else if (activator != null) {
             return Collections.singletonList(activator);
@@ -156,10 +275,19 @@ public class Simulation<T extends ScriptContext> {
 
     public void setCVar(String name, Object newValue) {
         executor.executeWithinScriptThread(() -> {
+            setCVarInternal(name, newValue);
+            journal.record(new InputJournal.SetServerCVar(name, newValue));
+        });
+    }
+
+    // changes made by scripts are reproduced by replaying them, so they are not journaled
+    void setCVarInternal(String name, Object newValue) {
+        {
+            executor.assertIsFiberThread();
             if (getCVarType(name).isPlayerOwned()) throw new IllegalArgumentException("CVAR is not a server one");
-            printlnMarked("setting " + name);
+            if (isTraced(TraceLevel.INFO, TraceCategory.CVARS)) trace(TraceLevel.INFO, TraceCategory.CVARS, "setting " + name);
             serverCvarValues.put(name, newValue);
-        });
+        }
     }
 
     void onDeath(Actor actor, Thing killedBy) {
@@ -182,26 +310,18 @@ public class Simulation<T extends ScriptContext> {
         });
     }
 
-    static Constructor<?> getConstructor(Class<?> aClass) throws NoSuchMethodException {
-        Constructor<?> constructor = aClass.getDeclaredConstructor(Simulation.class);
-        constructor.setAccessible(true);
-        return constructor;
-    }
-
     void createThing(String type, double x, double y, int z, int newtid, int angle) {
         {
             executor.assertIsFiberThread();
             Thing newThing;
             try {
-                newThing = (Thing) getConstructor(classForSimpleName(type)).newInstance(this);
-            } catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException | ClassNotFoundException e) {
+                newThing = (Thing) classForSimpleName(type).newInstance(this);
+            } catch (ClassNotFoundException e) {
                 throw new IllegalStateException(e);
             }
             newThing.setPosition(x, y, z);
             newThing.setAngle(angle);
             newThing.setTid(newtid);
-
-            data.get().things.add(newThing);
         }
     }
 
@@ -217,41 +337,128 @@ public class Simulation<T extends ScriptContext> {
 
     public void runAtLeastTicks(int ticks, Predicate<List<String>> isIdle) {
         try {
-            if (executor.getCurrentTick() == -1) {
-                synchronized (scriptEventListeners) {
-                    List<ScriptContext.NamedRunnable> openRunnables = scriptEventListeners.stream()
-                            .flatMap(listener -> listener.createInitRunnables().stream())
-                            .collect(Collectors.toList());
-                    printlnMarked("Executing OPEN scripts");
-                    executor.executeTickWithRunnables(openRunnables);
-                }
-            }
+            runOpenScriptsIfNeeded();
 
             boolean isSimIdle = false;
-            for (int i = 0; i < ticks || !isSimIdle; i++) {
-                int currentTick = executor.getCurrentTick();
-                double second = currentTick / 35.0;
-                printfMarked("-- Tick %d | %.2f second in the sim ---------------------%n",
-                        currentTick, second);
+            int i;
+            for (i = 0; i < ticks || !isSimIdle; i++) {
+                if (fastForwardIdleTicks) {
+                    // don't skip over the requested number of ticks, so the final tick is the same as without skipping
+                    int skipped = executor.skipIdleTicks(i < ticks ? ticks - i - 1 : Integer.MAX_VALUE);
+                    if (skipped > 0) {
+                        if (isTraced(TraceLevel.DEBUG, TraceCategory.TICKS)) {
+                            trace(TraceLevel.DEBUG, TraceCategory.TICKS, "-- Skipped " + skipped + " idle ticks");
+                        }
+                        i += skipped;
+                    }
+                }
+
+                if (isTraced(TraceLevel.DEBUG, TraceCategory.TICKS)) {
+                    int currentTick = executor.getCurrentTick();
+                    double second = currentTick / 35.0;
+                    trace(TraceLevel.DEBUG, TraceCategory.TICKS, String.format(
+                            "-- Tick %d | %.2f second in the sim ---------------------", currentTick, second));
+                }
 
                 executor.executeTick();
                 isSimIdle = isIdle.test(executor.getActiveRunnables());
             }
+            journal.recordTicksUpTo(executor.getLastExecutedTick());
         } catch (TimeoutException e) {
+            dumpTrace(System.err);
             throw new RuntimeException(e);
+        } catch (RuntimeException | Error e) {
+            dumpTrace(System.err);
+            throw e;
         }
     }
 
+    // executed when replaying inputs
+    void runOpenScripts() {
+        try {
+            runOpenScriptsIfNeeded();
+            journal.recordTicksUpTo(0);
+        } catch (TimeoutException e) {
+            dumpTrace(System.err);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void runOpenScriptsIfNeeded() throws TimeoutException {
+        if (executor.getCurrentTick() == -1) {
+            synchronized (scriptEventListeners) {
+                List<ScriptContext.NamedRunnable> openRunnables = scriptEventListeners.stream()
+                        .flatMap(listener -> listener.createInitRunnables().stream())
+                        .collect(Collectors.toList());
+                trace(TraceLevel.DEBUG, TraceCategory.SCRIPTS, "Executing OPEN scripts");
+                executor.executeTickWithRunnables(openRunnables);
+            }
+        }
+    }
+
+    /**
+     * Starts applying inputs of the timeline at the start of the following ticks. Can only be called between ticks.
+     * Only one timeline can be played at a time, but a new one can be played after all inputs of the previous one
+     * were applied.
+     */
+    public void playInputs(InputTimeline timeline) {
+        executor.executeWithinScriptThread(() -> {
+            if (executor.getTickInputs() != null && executor.getTickInputs().nextInputTick() != Integer.MAX_VALUE) {
+                throw new IllegalStateException("Another timeline is still being played");
+            }
+            executor.setTickInputs(timeline.play(this, executor.getCurrentTick()));
+        });
+    }
+
+    // executed by the script thread when playing inputs
+    void recordTicksUpTo(int tick) {
+        journal.recordTicksUpTo(tick);
+    }
+
+    // executed by the script thread when playing inputs
+    void pukeScript(Player activator, String name, Object[] args) {
+        if (scriptEventListeners.isEmpty()) throw new IllegalStateException("No scripts are registered in the simulation");
+        scriptEventListeners.get(0).pukeScript(activator, name, args);
+    }
+
+    /**
+     * When enabled, runAtLeastTicks jumps over ticks on which no script is scheduled and all delayed scripts
+     * wait for later ticks. Tick numbers seen by scripts stay the same.
+     */
+    public void setFastForwardIdleTicks(boolean fastForwardIdleTicks) {
+        this.fastForwardIdleTicks = fastForwardIdleTicks;
+    }
+
     public void printlnMarked(String s) {
-        executor.printlnMarked(s);
+        trace(TraceLevel.INFO, TraceCategory.TESTS, s);
     }
 
-    Class<?> classForSimpleName(String className) throws ClassNotFoundException {
+    public void setTraceSink(TraceSink traceSink) {
+        executor.setTraceSink(traceSink);
+    }
+
+    /**
+     * Writes traces kept in memory by the sink, e.g. by {@link RingBufferTraceSink}
+     */
+    public void dumpTrace(PrintStream out) {
+        executor.getTraceSink().dump(out);
+    }
+
+    boolean isTraced(TraceLevel level, TraceCategory category) {
+        return executor.isTraced(level, category);
+    }
+
+    void trace(TraceLevel level, TraceCategory category, String message) {
+        executor.trace(level, category, message);
+    }
+
+    ClassFactories.Entry classForSimpleName(String className) throws ClassNotFoundException {
         return classGetter.forSimpleName(className);
     }
 
     public void registerCVar(String name, CVarTypes cvarType) {
         this.cvarTypes.put(name, cvarType);
+        journal.record(new InputJournal.RegisterCVar(name, cvarType));
     }
 
     ThreadContext getThreadContext() {
@@ -262,18 +469,58 @@ public class Simulation<T extends ScriptContext> {
         executor.assertIsFiberThread();
     }
 
+    /**
+     * Runs arbitrary code between ticks. As such code can't be recorded, simulations using this
+     * can't be replayed.
+     */
     public void withTickLock(Runnable runnable) {
+        journal.markUnreplayable("withTickLock was called");
+        withTickLockInternal(runnable);
+    }
+
+    void withTickLockInternal(Runnable runnable) {
         executor.executeWithinScriptThread(runnable);
     }
 
+    <D> ScriptThreadEnforcer<D> confineToScriptThread(D data) {
+        return new ScriptThreadEnforcer<>(executor, data);
+    }
+
     public void printfMarked(String format, Object... args) {
-        executor.printfMarked(format, args);
+        if (isTraced(TraceLevel.INFO, TraceCategory.TESTS)) {
+            trace(TraceLevel.INFO, TraceCategory.TESTS, stripLineEnd(String.format(format, args)));
+        }
+    }
+
+    private static String stripLineEnd(String message) {
+        // messages are traced line by line
+        return message.endsWith(System.lineSeparator())
+                ? message.substring(0, message.length() - System.lineSeparator().length())
+                : message;
+    }
+
+    @Override
+    public void close() {
+        try {
+            executor.close();
+        } finally {
+            InputLog.Writer writer = inputLogWriter;
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
     }
 
     private static class SimulationData {
         // Should be accessed within script context only
-        private final Player[] players = new Player[32];
+        private final PlayerSlots players = new PlayerSlots();
         private final List<Thing> things = new ArrayList<>();
+        private final ThingColumns thingColumns = new ThingColumns();
+        private final Map<Integer, Set<Thing>> thingsByTid = new HashMap<>();
     }
 
     public enum CVarTypes {
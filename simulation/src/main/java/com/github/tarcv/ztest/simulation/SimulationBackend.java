@@ -0,0 +1,39 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The way scripts are suspended between ticks.
+ * The default can be changed with the {@code ztest.backend} system property.
+ */
+public enum SimulationBackend {
+    /**
+     * Quasar fibers, needs the Quasar agent or AOT instrumentation of scripts.
+     */
+    QUASAR_FIBERS {
+        @Override
+        ExecutionBackend create(ExecutorService schedulerExecutor, boolean ownsSchedulerExecutor) {
+            return new FiberBackend(schedulerExecutor, ownsSchedulerExecutor);
+        }
+    },
+
+    /**
+     * A thread per script, virtual when running on JDK 21 or newer. Needs no instrumentation.
+     */
+    VIRTUAL_THREADS {
+        @Override
+        ExecutionBackend create(ExecutorService schedulerExecutor, boolean ownsSchedulerExecutor) {
+            return new ThreadBackend(schedulerExecutor, ownsSchedulerExecutor);
+        }
+    };
+
+    abstract ExecutionBackend create(ExecutorService schedulerExecutor, boolean ownsSchedulerExecutor);
+
+    public static SimulationBackend getDefault() {
+        String name = System.getProperty("ztest.backend");
+        if (name == null || name.isEmpty()) {
+            return QUASAR_FIBERS;
+        }
+        return valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,288 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a simulation. They are always collected, as recording only increments striped counters.
+ * Script counters are also kept per executed tick, things done between ticks count towards the next tick.
+ */
+public final class SimulationMetrics {
+    private final LatencyHistogram tickTime = new LatencyHistogram();
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder skippedTicks = new LongAdder();
+    private final PerTickCounter scriptsStarted = new PerTickCounter();
+    private final PerTickCounter scriptsResumed = new PerTickCounter();
+    private final PerTickCounter scriptsFinished = new PerTickCounter();
+    private final LongAdder strandsCreated = new LongAdder();
+    private final LongAdder scriptThreadHops = new LongAdder();
+    private final LongAdder thingsCreated = new LongAdder();
+    private final LongAdder inventoryObjectsCreated = new LongAdder();
+    private final LongAdder liveThings = new LongAdder();
+    private final LongAdder liveInventoryObjects = new LongAdder();
+    private final LongAdder runAwayTimeouts = new LongAdder();
+    private volatile int delayedScripts = 0;
+
+    SimulationMetrics() {
+    }
+
+    void tickExecuted(long nanos, int delayedScripts) {
+        tickTime.record(nanos);
+        ticks.increment();
+        scriptsStarted.tickEnded();
+        scriptsResumed.tickEnded();
+        scriptsFinished.tickEnded();
+        this.delayedScripts = delayedScripts;
+    }
+
+    void ticksSkipped(int count) {
+        skippedTicks.add(count);
+    }
+
+    void scriptStarted() {
+        scriptsStarted.increment();
+    }
+
+    void scriptResumed() {
+        scriptsResumed.increment();
+    }
+
+    void scriptFinished() {
+        scriptsFinished.increment();
+    }
+
+    void strandCreated() {
+        strandsCreated.increment();
+    }
+
+    void scriptThreadHop() {
+        scriptThreadHops.increment();
+    }
+
+    void thingCreated() {
+        thingsCreated.increment();
+        liveThings.increment();
+    }
+
+    void inventoryObjectCreated() {
+        inventoryObjectsCreated.increment();
+    }
+
+    void inventoryObjectsStored(int count) {
+        liveInventoryObjects.add(count);
+    }
+
+    void inventoryObjectsTaken(int count) {
+        liveInventoryObjects.add(-count);
+    }
+
+    void runAwayTimeout() {
+        runAwayTimeouts.increment();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Total of a counter along with how much it grew on the last executed tick and the most it grew on a tick
+     */
+    private static final class PerTickCounter {
+        private final LongAdder total = new LongAdder();
+        private long totalAtLastTick = 0; // accessed by the tick thread only
+        private volatile long lastTick = 0;
+        private volatile long maxPerTick = 0;
+
+        void increment() {
+            total.increment();
+        }
+
+        void tickEnded() {
+            long currentTotal = total.sum();
+            long delta = currentTotal - totalAtLastTick;
+            totalAtLastTick = currentTotal;
+            lastTick = delta;
+            if (delta > maxPerTick) {
+                maxPerTick = delta;
+            }
+        }
+    }
+
+    public static final class Snapshot {
+        private final LatencyHistogram tickTime;
+        private final long ticks;
+        private final long skippedTicks;
+        private final long scriptsStarted;
+        private final long scriptsResumed;
+        private final long scriptsFinished;
+        private final long scriptsStartedLastTick;
+        private final long scriptsResumedLastTick;
+        private final long scriptsFinishedLastTick;
+        private final long maxScriptsStartedPerTick;
+        private final long maxScriptsResumedPerTick;
+        private final long maxScriptsFinishedPerTick;
+        private final long strandsCreated;
+        private final long scriptThreadHops;
+        private final long thingsCreated;
+        private final long inventoryObjectsCreated;
+        private final long liveThings;
+        private final long liveInventoryObjects;
+        private final long runAwayTimeouts;
+        private final int delayedScripts;
+
+        private Snapshot(SimulationMetrics metrics) {
+            tickTime = metrics.tickTime.copy();
+            ticks = metrics.ticks.sum();
+            skippedTicks = metrics.skippedTicks.sum();
+            scriptsStarted = metrics.scriptsStarted.total.sum();
+            scriptsResumed = metrics.scriptsResumed.total.sum();
+            scriptsFinished = metrics.scriptsFinished.total.sum();
+            scriptsStartedLastTick = metrics.scriptsStarted.lastTick;
+            scriptsResumedLastTick = metrics.scriptsResumed.lastTick;
+            scriptsFinishedLastTick = metrics.scriptsFinished.lastTick;
+            maxScriptsStartedPerTick = metrics.scriptsStarted.maxPerTick;
+            maxScriptsResumedPerTick = metrics.scriptsResumed.maxPerTick;
+            maxScriptsFinishedPerTick = metrics.scriptsFinished.maxPerTick;
+            strandsCreated = metrics.strandsCreated.sum();
+            scriptThreadHops = metrics.scriptThreadHops.sum();
+            thingsCreated = metrics.thingsCreated.sum();
+            inventoryObjectsCreated = metrics.inventoryObjectsCreated.sum();
+            liveThings = metrics.liveThings.sum();
+            liveInventoryObjects = metrics.liveInventoryObjects.sum();
+            runAwayTimeouts = metrics.runAwayTimeouts.sum();
+            delayedScripts = metrics.delayedScripts;
+        }
+
+        /**
+         * Wall time of executed ticks, skipped ticks are not included
+         */
+        public LatencyHistogram getTickTime() {
+            return tickTime;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        public long getSkippedTicks() {
+            return skippedTicks;
+        }
+
+        public long getScriptsStarted() {
+            return scriptsStarted;
+        }
+
+        public long getScriptsResumed() {
+            return scriptsResumed;
+        }
+
+        public long getScriptsFinished() {
+            return scriptsFinished;
+        }
+
+        public long getScriptsStartedLastTick() {
+            return scriptsStartedLastTick;
+        }
+
+        public long getScriptsResumedLastTick() {
+            return scriptsResumedLastTick;
+        }
+
+        public long getScriptsFinishedLastTick() {
+            return scriptsFinishedLastTick;
+        }
+
+        public long getMaxScriptsStartedPerTick() {
+            return maxScriptsStartedPerTick;
+        }
+
+        public long getMaxScriptsResumedPerTick() {
+            return maxScriptsResumedPerTick;
+        }
+
+        public long getMaxScriptsFinishedPerTick() {
+            return maxScriptsFinishedPerTick;
+        }
+
+        /**
+         * Fibers or threads created for scripts
+         */
+        public long getStrandsCreated() {
+            return strandsCreated;
+        }
+
+        /**
+         * Calls into the simulation that had to be passed to the script thread
+         */
+        public long getScriptThreadHops() {
+            return scriptThreadHops;
+        }
+
+        public long getThingsCreated() {
+            return thingsCreated;
+        }
+
+        public long getInventoryObjectsCreated() {
+            return inventoryObjectsCreated;
+        }
+
+        /**
+         * Things currently in the simulation, things are not removed yet so this is the same as things created
+         */
+        public long getLiveThings() {
+            return liveThings;
+        }
+
+        /**
+         * Item objects currently held in inventories, stackable items are stored as amounts and not counted
+         */
+        public long getLiveInventoryObjects() {
+            return liveInventoryObjects;
+        }
+
+        public long getRunAwayTimeouts() {
+            return runAwayTimeouts;
+        }
+
+        /**
+         * Scripts waiting for a delay after the last executed tick
+         */
+        public int getDelayedScripts() {
+            return delayedScripts;
+        }
+
+        public Map<String, Long> toMap() {
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("ticks", ticks);
+            values.put("skippedTicks", skippedTicks);
+            values.put("tickTime.totalNanos", tickTime.getTotalNanos());
+            values.put("tickTime.p50Nanos", tickTime.getPercentileNanos(50));
+            values.put("tickTime.p99Nanos", tickTime.getPercentileNanos(99));
+            values.put("tickTime.maxNanos", tickTime.getMaxNanos());
+            values.put("scriptsStarted", scriptsStarted);
+            values.put("scriptsResumed", scriptsResumed);
+            values.put("scriptsFinished", scriptsFinished);
+            values.put("scriptsStartedLastTick", scriptsStartedLastTick);
+            values.put("scriptsResumedLastTick", scriptsResumedLastTick);
+            values.put("scriptsFinishedLastTick", scriptsFinishedLastTick);
+            values.put("maxScriptsStartedPerTick", maxScriptsStartedPerTick);
+            values.put("maxScriptsResumedPerTick", maxScriptsResumedPerTick);
+            values.put("maxScriptsFinishedPerTick", maxScriptsFinishedPerTick);
+            values.put("delayedScripts", (long) delayedScripts);
+            values.put("strandsCreated", strandsCreated);
+            values.put("scriptThreadHops", scriptThreadHops);
+            values.put("thingsCreated", thingsCreated);
+            values.put("inventoryObjectsCreated", inventoryObjectsCreated);
+            values.put("liveThings", liveThings);
+            values.put("liveInventoryObjects", liveInventoryObjects);
+            values.put("runAwayTimeouts", runAwayTimeouts);
+            return values;
+        }
+
+        @Override
+        public String toString() {
+            return toMap().toString();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs independent simulations in parallel on a fixed number of carrier threads.
+ * <p>
+ * Each carrier runs one simulation at a time and reuses the same scheduler thread for all of its simulations,
+ * so the number of threads stays bounded no matter how many scenarios are submitted.
+ * Note that ACS global and world variables are static in the generated code,
+ * so scenarios running in parallel must not rely on them.
+ */
+public class SimulationPool implements AutoCloseable {
+    private final SimulationBackend backend;
+    private final ExecutorService carriers;
+    private final List<ExecutorService> schedulers = Collections.synchronizedList(new ArrayList<>());
+    private final ThreadLocal<ExecutorService> carrierScheduler = ThreadLocal.withInitial(this::createScheduler);
+
+    public SimulationPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public SimulationPool(int parallelism) {
+        this(parallelism, SimulationBackend.getDefault());
+    }
+
+    public SimulationPool(int parallelism, SimulationBackend backend) {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive");
+        this.backend = backend;
+        this.carriers = Executors.newFixedThreadPool(parallelism, daemonThreads("Simulation carrier"));
+    }
+
+    /**
+     * Creates a simulation with the given seed on a free carrier and runs the scenario on it.
+     * The simulation is closed as soon as the scenario returns.
+     */
+    public <T extends ScriptContext, R> CompletableFuture<R> submit(long seed, Function<Simulation<T>, R> scenario) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Simulation<T> simulation = new Simulation<>(seed, backend, carrierScheduler.get())) {
+                return scenario.apply(simulation);
+            }
+        }, carriers);
+    }
+
+    /**
+     * Runs the scenario once for each seed and returns the results in the order of the seeds.
+     */
+    public <T extends ScriptContext, R> List<R> runAll(List<Long> seeds, Function<Simulation<T>, R> scenario) {
+        List<CompletableFuture<R>> futures = seeds.stream()
+                .map(seed -> this.<T, R>submit(seed, scenario))
+                .collect(Collectors.toList());
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() {
+        carriers.shutdown();
+        try {
+            while (!carriers.awaitTermination(1, TimeUnit.MINUTES)) {
+                // wait for running scenarios
+            }
+        } catch (InterruptedException e) {
+            carriers.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (schedulers) {
+                schedulers.forEach(ExecutorService::shutdownNow);
+            }
+        }
+    }
+
+    private ExecutorService createScheduler() {
+        ExecutorService scheduler = Executors.newSingleThreadExecutor(daemonThreads("Tick scheduler"));
+        schedulers.add(scheduler);
+        return scheduler;
+    }
+
+    private static ThreadFactory daemonThreads(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + " " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
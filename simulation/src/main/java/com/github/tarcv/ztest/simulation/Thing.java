@@ -1,54 +1,53 @@
 package com.github.tarcv.ztest.simulation;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import org.jetbrains.annotations.Nullable;
+
 import java.util.*;
 import java.util.function.Consumer;
 
-import static com.github.tarcv.ztest.simulation.Simulation.getConstructor;
-
 public class Thing {
-    private final Set<String> flags = Collections.synchronizedSet(new HashSet<>());
-    private final Map<String, Object> properties = Collections.synchronizedMap(new HashMap<>());
-    private final List<State> stateList = Collections.synchronizedList(new ArrayList<>());
-    private final List<CustomInventory> inventory = Collections.synchronizedList(new ArrayList<>());
+    // Collections are created on first use, as most things never need them.
+    // Like the columns they should be accessed within the script thread only.
+    @Nullable private Set<String> flags = null;
+    @Nullable private Map<String, Object> properties = null;
+    @Nullable private List<State> stateList = null;
+    private final InventoryStore inventory = new InventoryStore();
     protected final Simulation simulation;
+    private final int id; // index in the columns of the simulation
     private volatile Thing activator = this;
     private volatile int tid = 0;
-    private volatile double x = 0;
-    private volatile double y = 0;
-    private volatile double z = 0;
-    private volatile int angle = 0;
-    private volatile double velx = 0;
-    private volatile double vely = 0;
-    private volatile double velz = 0;
-    private volatile double alpha = 1.0;
 
     Thing(Simulation simulation) {
-        simulation.registerThing(this);
+        this.id = simulation.registerThing(this);
         this.simulation = simulation;
     }
 
+    int getId() {
+        return id;
+    }
+
     Thing getActivator() {
         return activator;
     }
 
     protected final void addFlag(String flag) {
+        if (flags == null) flags = new HashSet<>();
         flags.add(flag.toUpperCase());
     }
 
     protected final void removeFlag(String flag) {
-        if (!flags.remove(flag.toUpperCase())) {
+        if (flags == null || !flags.remove(flag.toUpperCase())) {
             throw new AssertionError("Flag " + flag + " was not present");
         }
     }
 
     final boolean hasFlag(String flag) {
-        return flags.contains(flag.toUpperCase());
+        return flags != null && flags.contains(flag.toUpperCase());
     }
 
     protected void setProperty(String name, Object value) {
         verifyPropertyNameAndValue(name, value);
+        if (properties == null) properties = new HashMap<>();
         properties.put(name, value);
     }
 
@@ -62,16 +61,15 @@ public class Thing {
 
     protected final void states(String sprite, String frames, int duration, Consumer<Thing> target) {
         target.accept(this);
-        synchronized (stateList) {
-            stateList.add(new State(sprite + frames, duration));
-            if (stateList.size() > 100) {
-                stateList.remove(0);
-            }
+        if (stateList == null) stateList = new ArrayList<>();
+        stateList.add(new State(sprite + frames, duration));
+        if (stateList.size() > 100) {
+            stateList.remove(0);
+        }
 
-            // TODO: delay(duration)
+        // TODO: delay(duration)
 
-            target.accept(activator);
-        }
+        target.accept(activator);
     }
 
     void setActivator(Thing owner) {
@@ -87,7 +85,8 @@ public class Thing {
     }
 
     void pickItem(CustomInventory item) {
-        inventory.add(item);
+        inventory.addItem(item);
+        simulation.getMetrics().inventoryObjectsStored(1);
         item.pickupBy(this);
     }
 
@@ -97,14 +96,19 @@ public class Thing {
 
     void giveInventory(String className, int count) {
         try {
-            Class<?> aClass = simulation.classForSimpleName(className);
-            Constructor<?> constructor = getConstructor(aClass);
+            ClassFactories.Entry itemClass = simulation.classForSimpleName(className);
+            if (InventoryStore.isStackable(itemClass.type)) {
+                // such items have no pickup behaviour, so there is no need to create an object for each of them
+                activator.inventory.addAmount(itemClass.type, count);
+                return;
+            }
+
             for (int i = 0; i < count; i++) {
-                CustomInventory item = (CustomInventory) constructor.newInstance(simulation);
+                CustomInventory item = (CustomInventory) itemClass.newInstance(simulation);
+                simulation.getMetrics().inventoryObjectCreated();
                 activator.pickItem(item);
             }
-        } catch (InstantiationException | IllegalAccessException | ClassNotFoundException | NoSuchMethodException
-                | InvocationTargetException e) {
+        } catch (ClassNotFoundException e) {
             throw new RuntimeException(e);
         }
     }
@@ -114,21 +118,8 @@ public class Thing {
     }
 
     void takeInventory(String className, int count) {
-        for (int i = 0; i < count; i++) {
-            activator.removeItem(className);
-        }
-    }
-
-    private void removeItem(String className) {
-        synchronized (inventory) {
-            Optional<CustomInventory> itemToRemove = inventory.stream()
-                    .filter(item -> className.equals(item.getClass().getSimpleName()))
-                    .findAny();
-            itemToRemove.map(item -> {
-                inventory.remove(item);
-                return item;
-            });
-        }
+        int removedItems = activator.inventory.remove(className, count);
+        simulation.getMetrics().inventoryObjectsTaken(removedItems);
     }
 
     public void A_ChangeFlag(String flag, int newValue) {
@@ -156,7 +147,7 @@ public class Thing {
     }
 
     public void A_SetTranslucent(double alpha) {
-        // TODO
+        simulation.getThingColumns().setAlpha(id, alpha);
     }
 
     public void SetPlayerProperty(int who, int set, int which) {
@@ -170,11 +161,8 @@ public class Thing {
     }
 
     int checkInventory(String name) {
-        synchronized (inventory) {
-            return (int) inventory.stream()
-                    .filter(i -> i.getClass().getSimpleName().equalsIgnoreCase(name))
-                    .count();
-        }
+        simulation.assertTickLockHeld();
+        return inventory.count(name);
     }
 
     int getTid() {
@@ -182,27 +170,25 @@ public class Thing {
     }
 
     void setTid(int tid) {
+        int oldTid = this.tid;
         this.tid = tid;
+        simulation.onTidChanged(this, oldTid, tid);
     }
 
     void setPosition(double x, double y, double z) {
-        this.x = x;
-        this.y = y;
-        this.z = z;
+        simulation.getThingColumns().setPosition(id, x, y, z);
     }
 
     void setAngle(int angle) {
-        this.angle = angle;
+        simulation.getThingColumns().setAngle(id, angle);
     }
 
     void setVelocity(double velx, double vely, double velz) {
-        this.velx = velx;
-        this.vely = vely;
-        this.velz = velz;
+        simulation.getThingColumns().setVelocity(id, velx, vely, velz);
     }
 
     protected Object getProperty(String name) {
-        Object value = properties.get(name);
+        Object value = properties != null ? properties.get(name) : null;
         if (value == null) {
             throw new IllegalStateException(String.format("Property %s was not set", name));
         }
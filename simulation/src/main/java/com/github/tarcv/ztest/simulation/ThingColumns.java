@@ -0,0 +1,62 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Positions, velocities, angles and alphas of things of a simulation stored in primitive arrays,
+ * indexed by ids things get in the order they are created. Should be accessed from the script thread only.
+ * <p>
+ * Scripts only set these values for now, nothing in the simulation reads them yet.
+ */
+class ThingColumns {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int size = 0;
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private double[] z = new double[INITIAL_CAPACITY];
+    private double[] velX = new double[INITIAL_CAPACITY];
+    private double[] velY = new double[INITIAL_CAPACITY];
+    private double[] velZ = new double[INITIAL_CAPACITY];
+    private double[] alpha = new double[INITIAL_CAPACITY];
+    private int[] angle = new int[INITIAL_CAPACITY];
+
+    /**
+     * @return id of the new thing
+     */
+    int add() {
+        if (size == x.length) {
+            int capacity = x.length * 2;
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            z = Arrays.copyOf(z, capacity);
+            velX = Arrays.copyOf(velX, capacity);
+            velY = Arrays.copyOf(velY, capacity);
+            velZ = Arrays.copyOf(velZ, capacity);
+            alpha = Arrays.copyOf(alpha, capacity);
+            angle = Arrays.copyOf(angle, capacity);
+        }
+        alpha[size] = 1.0;
+        return size++;
+    }
+
+    void setPosition(int id, double x, double y, double z) {
+        this.x[id] = x;
+        this.y[id] = y;
+        this.z[id] = z;
+    }
+
+    void setVelocity(int id, double velX, double velY, double velZ) {
+        this.velX[id] = velX;
+        this.velY[id] = velY;
+        this.velZ[id] = velZ;
+    }
+
+    void setAngle(int id, int angle) {
+        this.angle[id] = angle;
+    }
+
+    void setAlpha(int id, double alpha) {
+        this.alpha[id] = alpha;
+    }
+}
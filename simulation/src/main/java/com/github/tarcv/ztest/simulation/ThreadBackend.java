@@ -0,0 +1,164 @@
+package com.github.tarcv.ztest.simulation;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.SuspendableRunnable;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs each script on its own thread, virtual ones when the JDK supports them.
+ * Scripts are plain blocking code here, so no Quasar instrumentation is needed.
+ */
+class ThreadBackend implements ExecutionBackend {
+    private static final ThreadFactory STRAND_FACTORY = createStrandFactory();
+    private static final ThreadLocal<ThreadStrand> CURRENT_STRAND = new ThreadLocal<>();
+
+    private final ExecutorService commandExecutor;
+    private final boolean ownsCommandExecutor;
+    private final Thread commandThread;
+    private final Set<ThreadStrand> liveStrands = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param commandExecutor single threaded executor running everything that is not a script
+     * @param ownsCommandExecutor whether {@link #close()} should shut the command executor down
+     */
+    ThreadBackend(ExecutorService commandExecutor, boolean ownsCommandExecutor) {
+        this.commandExecutor = commandExecutor;
+        this.ownsCommandExecutor = ownsCommandExecutor;
+        this.commandThread = ExecutionBackend.getExecutorThread(commandExecutor);
+    }
+
+    @Override
+    public <V> Future<V> submit(Callable<V> callable) {
+        return commandExecutor.submit(callable);
+    }
+
+    @Override
+    public ScriptStrand newStrand(String name, SuspendableRunnable body) {
+        return new ThreadStrand(name, body);
+    }
+
+    @Override
+    public boolean startsStrandsInOrder() {
+        return false;
+    }
+
+    @Override
+    @Nullable
+    public ScriptStrand currentStrand() {
+        ThreadStrand strand = CURRENT_STRAND.get();
+        if (strand != null && strand.backend() == this) {
+            return strand;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isScriptThread() {
+        return Thread.currentThread() == commandThread || currentStrand() != null;
+    }
+
+    @Override
+    public ResumeLatch newLatch() {
+        CountDownLatch latch = new CountDownLatch(1);
+        return new ResumeLatch() {
+            @Override
+            public void await() throws InterruptedException {
+                latch.await();
+            }
+
+            @Override
+            public void countDown() {
+                latch.countDown();
+            }
+
+            @Override
+            public long getCount() {
+                return latch.getCount();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        // unlike fibers, delayed threads have to be stopped explicitly
+        liveStrands.forEach(ThreadStrand::cancel);
+        if (ownsCommandExecutor) {
+            commandExecutor.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory createStrandFactory() {
+        try {
+            // Thread.ofVirtual().factory() is looked up reflectively, so this class still compiles for Java 8
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory")
+                    .invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    private class ThreadStrand extends ScriptStrand {
+        private final Thread thread;
+        private volatile Throwable failure;
+
+        private ThreadStrand(String name, SuspendableRunnable body) {
+            thread = STRAND_FACTORY.newThread(() -> {
+                CURRENT_STRAND.set(this);
+                try {
+                    body.run();
+                } catch (SuspendExecution e) {
+                    failure = new AssertionError("Scripts are never suspended by Quasar in this backend", e);
+                } catch (Throwable e) {
+                    failure = e;
+                } finally {
+                    CURRENT_STRAND.remove();
+                    liveStrands.remove(this);
+                }
+            });
+            thread.setName(name);
+        }
+
+        private ThreadBackend backend() {
+            return ThreadBackend.this;
+        }
+
+        @Override
+        void start() {
+            liveStrands.add(this);
+            thread.start();
+        }
+
+        @Override
+        void join(long timeoutMillis) throws ExecutionException, InterruptedException, TimeoutException {
+            thread.join(timeoutMillis);
+            if (thread.isAlive()) {
+                throw new TimeoutException();
+            }
+            Throwable failure = this.failure;
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+        }
+
+        @Override
+        void cancel() {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.function.BooleanSupplier;
+
+class TickBarrier {
+    private int runningThreads = 0;
+
+    // executed by the executor thread right before a tick thread is started or resumed
+    synchronized void threadResumed(Runnable stateChange) {
+        stateChange.run();
+        ++runningThreads;
+    }
+
+    // executed by a tick thread when it delays or terminates
+    synchronized void threadSuspended(Runnable stateChange) {
+        assert runningThreads > 0;
+        stateChange.run();
+        --runningThreads;
+        notifyAll();
+    }
+
+    boolean awaitQuiescence(long timeoutMillis) {
+        return await(() -> runningThreads == 0, timeoutMillis);
+    }
+
+    /**
+     * Waits until the condition becomes true. The condition is rechecked each time a tick thread suspends,
+     * so it should only depend on state changed through this barrier.
+     */
+    synchronized boolean await(BooleanSupplier condition, long timeoutMillis) {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        while (!condition.getAsBoolean()) {
+            long leftNanos = deadline - System.nanoTime();
+            if (leftNanos <= 0) {
+                return false;
+            }
+            try {
+                wait(leftNanos / 1_000_000, (int) (leftNanos % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TerminateScriptException(e);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.tarcv.ztest.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel keyed by absolute tick numbers. Taking elements due on a tick only touches
+ * the bucket of that tick, elements scheduled further than the wheel size just stay in their bucket
+ * for more rounds. Target ticks are also kept in a heap, so the earliest of them is known without a scan.
+ */
+class TickWheel<E> {
+    private static final int BUCKET_COUNT = 256; // should be a power of 2
+
+    private final List<List<Entry<E>>> buckets = new ArrayList<>(BUCKET_COUNT);
+    private final PriorityQueue<Integer> targetTicks = new PriorityQueue<>();
+    private int size = 0;
+
+    TickWheel() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    void add(int targetTick, E element) {
+        bucketOf(targetTick).add(new Entry<>(targetTick, element));
+        targetTicks.add(targetTick);
+        ++size;
+    }
+
+    /**
+     * Removes elements due on the given tick. The caller should not skip ticks on which elements are due.
+     */
+    List<E> removeDue(int tick) {
+        if (size == 0) return Collections.emptyList();
+
+        List<Entry<E>> bucket = bucketOf(tick);
+        List<E> due = new ArrayList<>();
+        int kept = 0;
+        for (Entry<E> entry : bucket) {
+            if (entry.targetTick <= tick) {
+                assert entry.targetTick == tick : "a tick with due elements was skipped";
+                due.add(entry.element);
+            } else {
+                bucket.set(kept++, entry);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+        size -= due.size();
+        for (int i = 0; i < due.size(); i++) {
+            // no ticks with due elements were skipped, so the removed ticks are the earliest ones
+            int removedTick = targetTicks.remove();
+            assert removedTick == tick;
+        }
+        return due;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int earliestTargetTick() {
+        Integer earliest = targetTicks.peek();
+        return earliest != null ? earliest : Integer.MAX_VALUE;
+    }
+
+    void forEach(Consumer<E> action) {
+        if (size == 0) return;
+        for (List<Entry<E>> bucket : buckets) {
+            for (Entry<E> entry : bucket) {
+                action.accept(entry.element);
+            }
+        }
+    }
+
+    private List<Entry<E>> bucketOf(int tick) {
+        return buckets.get(tick & (BUCKET_COUNT - 1));
+    }
+
+    private static class Entry<E> {
+        final int targetTick;
+        final E element;
+
+        private Entry(int targetTick, E element) {
+            this.targetTick = targetTick;
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.tarcv.ztest.simulation;
+
+public enum TraceCategory {
+    TICKS,
+    SCRIPTS,
+    PLAYERS,
+    CVARS,
+    HUD,
+    TESTS
+}
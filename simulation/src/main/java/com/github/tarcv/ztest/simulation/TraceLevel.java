@@ -0,0 +1,7 @@
+package com.github.tarcv.ztest.simulation;
+
+public enum TraceLevel {
+    DEBUG,
+    INFO,
+    WARNING
+}
@@ -0,0 +1,95 @@
+package com.github.tarcv.ztest.simulation;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+
+/**
+ * Receives trace messages of simulations. Messages are only built when {@link #isEnabled} returns true,
+ * so a disabled level costs neither formatting nor allocations. Implementations should be thread-safe
+ * as a sink can be shared by simulations running in parallel.
+ * <p>
+ * The default sink can be changed with the {@code ztest.trace} system property ({@code console}, {@code async},
+ * {@code ring} or {@code off}) and the {@code ztest.traceLevel} one.
+ */
+public interface TraceSink {
+    boolean isEnabled(TraceLevel level, TraceCategory category);
+
+    /**
+     * @param source id of the simulation the message belongs to
+     */
+    void trace(int source, TraceLevel level, TraceCategory category, String message);
+
+    /**
+     * Writes messages kept in memory, it is called when a simulation fails
+     */
+    default void dump(PrintStream out) {
+    }
+
+    static TraceSink off() {
+        return OffTraceSink.INSTANCE;
+    }
+
+    static TraceSink getDefault() {
+        String levelName = System.getProperty("ztest.traceLevel");
+        TraceLevel level = levelName == null || levelName.isEmpty()
+                ? TraceLevel.DEBUG
+                : TraceLevel.valueOf(levelName.toUpperCase());
+
+        String name = System.getProperty("ztest.trace");
+        if (name == null || name.isEmpty()) {
+            name = "console";
+        }
+        switch (name.toLowerCase()) {
+            case "console":
+                return new ConsoleTraceSink(System.out, level);
+            case "async":
+                return SharedAsyncTraceSink.get(level);
+            case "ring":
+                return new RingBufferTraceSink(RingBufferTraceSink.DEFAULT_CAPACITY, level);
+            case "off":
+                return off();
+            default:
+                throw new IllegalArgumentException("Unknown trace sink: " + name);
+        }
+    }
+}
+
+/**
+ * The default sink is created for every simulation, so all of them share one async sink and its writer thread
+ * instead of leaking one per simulation. The sink is closed on exit, so queued messages are still written.
+ */
+class SharedAsyncTraceSink {
+    @Nullable private static AsyncTraceSink instance = null;
+
+    private SharedAsyncTraceSink() {
+    }
+
+    /**
+     * @param level is only used when the sink is created on the first call
+     */
+    static synchronized AsyncTraceSink get(TraceLevel level) {
+        if (instance == null) {
+            AsyncTraceSink sink = new AsyncTraceSink(System.out, level);
+            Runtime.getRuntime().addShutdownHook(new Thread(sink::close, "Trace writer shutdown"));
+            instance = sink;
+        }
+        return instance;
+    }
+}
+
+class OffTraceSink implements TraceSink {
+    static final OffTraceSink INSTANCE = new OffTraceSink();
+
+    private OffTraceSink() {
+    }
+
+    @Override
+    public boolean isEnabled(TraceLevel level, TraceCategory category) {
+        return false;
+    }
+
+    @Override
+    public void trace(int source, TraceLevel level, TraceCategory category, String message) {
+    }
+}